@@ -0,0 +1,81 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.GyroIO;
+import frc.robot.subsystems.SwerveModuleIO;
+
+/** Drivetrain math that runs every loop. */
+@State(Scope.Thread)
+public class DriveBenchmark {
+  private DriveSubsystem m_driveSubsystem;
+  private SwerveDriveOdometry m_odometry;
+  private final SwerveModulePosition[] m_positions = new SwerveModulePosition[4];
+  private final SwerveModuleState m_state = new SwerveModuleState(2.0, Rotation2d.fromDegrees(170.0));
+  private final Rotation2d m_currentAngle = Rotation2d.fromDegrees(-20.0);
+  private double m_input = 0.0;
+  private double m_distance = 0.0;
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    m_driveSubsystem = new DriveSubsystem(new GyroIO() {},
+        new SwerveModuleIO() {}, new SwerveModuleIO() {}, new SwerveModuleIO() {}, new SwerveModuleIO() {});
+    for (int i = 0; i < m_positions.length; i++) {
+      m_positions[i] = new SwerveModulePosition(0.0, new Rotation2d());
+    }
+    m_odometry = new SwerveDriveOdometry(Constants.DRIVE_KINEMATICS, new Rotation2d(), m_positions);
+  }
+
+  /** Allocation free field relative conversion and setpoint generation in DriveSubsystem. */
+  @Benchmark
+  public void drive() {
+    m_input = m_input > 1.0 ? -1.0 : m_input + 0.001;
+    m_driveSubsystem.drive(m_input * 3.0, 1.5, m_input * 4.0, true);
+  }
+
+  /** The WPILib kinematics drive() replaced, for comparison. */
+  @Benchmark
+  public SwerveModuleState[] wpilibKinematics() {
+    m_input = m_input > 1.0 ? -1.0 : m_input + 0.001;
+    SwerveModuleState[] states = Constants.DRIVE_KINEMATICS.toSwerveModuleStates(
+        ChassisSpeeds.fromFieldRelativeSpeeds(m_input * 3.0, 1.5, m_input * 4.0, Rotation2d.fromDegrees(30.0)));
+    SwerveDriveKinematics.desaturateWheelSpeeds(states, Constants.MAX_VELOCITY_METERS_PER_SECOND);
+    return states;
+  }
+
+  @Benchmark
+  public Object odometryUpdate() {
+    m_distance += 0.01;
+    for (SwerveModulePosition position : m_positions) {
+      position.distanceMeters = m_distance;
+    }
+    return m_odometry.update(Rotation2d.fromRadians(m_distance * 0.1), m_positions);
+  }
+
+  @Benchmark
+  public SwerveModuleState optimize() {
+    return SwerveModuleState.optimize(m_state, m_currentAngle);
+  }
+
+  @Benchmark
+  public double modifyAxis() {
+    m_input = m_input > 1.0 ? -1.0 : m_input + 0.001;
+    return RobotContainer.modifyAxis(m_input);
+  }
+}
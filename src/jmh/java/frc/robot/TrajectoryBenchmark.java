@@ -0,0 +1,80 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.Optional;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.trajectory.Trajectory;
+import frc.robot.utils.CompiledTrajectory;
+import frc.robot.utils.PoseHistory;
+
+/** Loading and sampling the deployed paths, and pose history lookups. */
+@State(Scope.Thread)
+public class TrajectoryBenchmark {
+  @Param({ "SQUARE", "BottomLink", "Two Cubes" })
+  public String m_pathName;
+
+  private PathPlannerTrajectory m_trajectory;
+  private final PoseHistory m_poseHistory = PoseHistory.forDuration(Constants.POSE_HISTORY_SECONDS,
+      Constants.ODOMETRY_FREQUENCY_HZ);
+  private final double[] m_pose = new double[3];
+  private double m_time = 0.0;
+  private double m_lookupTime = 0.0;
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    m_trajectory = CompiledTrajectory.loadOrGenerate(m_pathName,
+        Constants.AUTO_MAX_VELOCITY_METERS_PER_SECOND, Constants.AUTO_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED);
+
+    double period = 1.0 / Constants.ODOMETRY_FREQUENCY_HZ;
+    for (int i = 0; i < m_poseHistory.getCapacity(); i++) {
+      m_poseHistory.add(i * period, i * 0.01, i * 0.02, i * 0.001);
+    }
+  }
+
+  /** Generating the path from the .path file on the robot. */
+  @Benchmark
+  public PathPlannerTrajectory loadPath() {
+    return PathPlanner.loadPath(m_pathName,
+        Constants.AUTO_MAX_VELOCITY_METERS_PER_SECOND, Constants.AUTO_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED);
+  }
+
+  /** Memory mapping the trajectory compiled at build time. */
+  @Benchmark
+  public Optional<PathPlannerTrajectory> loadCompiled() {
+    return CompiledTrajectory.load(m_pathName,
+        Constants.AUTO_MAX_VELOCITY_METERS_PER_SECOND, Constants.AUTO_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED);
+  }
+
+  @Benchmark
+  public Trajectory.State sample() {
+    m_time += Constants.LOOP_PERIOD_SECONDS;
+    if (m_time > m_trajectory.getTotalTimeSeconds()) {
+      m_time = 0.0;
+    }
+    return m_trajectory.sample(m_time);
+  }
+
+  @Benchmark
+  public double[] poseHistoryLookup() {
+    m_lookupTime += 0.0037;
+    if (m_lookupTime > m_poseHistory.getNewestTimestamp()) {
+      m_lookupTime = m_poseHistory.getOldestTimestamp();
+    }
+    m_poseHistory.sample(m_lookupTime, m_pose);
+    return m_pose;
+  }
+}
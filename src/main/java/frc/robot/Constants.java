@@ -4,9 +4,17 @@
 
 package frc.robot;
 
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.StatorCurrentLimitConfiguration;
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
+import com.revrobotics.CANSparkMax.IdleMode;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
 import com.swervedrivespecialties.swervelib.SdsModuleConfigurations;
 
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.util.Units;
 
@@ -24,8 +32,44 @@ import edu.wpi.first.math.util.Units;
  */
 public final class Constants {
 
+  /** Where the robot code is running and where its inputs come from. */
+  public static enum Mode {
+    /** Running on a real robot */
+    REAL,
+    /** Running a physics simulator */
+    SIM,
+    /** Replaying from a log file */
+    REPLAY
+  }
+
+  // Mode to use when not running on a roboRIO
+  public static final Mode SIM_MODE = Mode.REPLAY;
+
+  public static final double LOOP_PERIOD_SECONDS = 0.02;
+
+  // Cycles the USB log writer can fall behind before stalling, and how often high rate outputs are recorded
+  public static final int LOG_QUEUE_CAPACITY = 250;
+  public static final int LOG_DECIMATION_PERIOD = 5;
+
+  // Physics simulation, fixed steps per loop and module inertia seen by each motor (kg m^2)
+  public static final int SIM_SUBSTEPS = 4;
+  public static final double SIM_DRIVE_MOI_KG_METERS_SQUARED = 0.025;
+  public static final double SIM_TURN_MOI_KG_METERS_SQUARED = 0.004;
+  // Simulated turn position loop (volts per radian)
+  public static final double SIM_TURN_KP = 10.0;
+  public static final double SIM_TURN_KD = 0.0;
+  // Environment variable naming the auto to run headless, set by ./gradlew simulateJava -PsimAuto=<name>
+  public static final String SIM_AUTO_ENV = "SIM_AUTO";
+  // Length of a headless simulated autonomous run (seconds)
+  public static final double SIM_AUTO_SECONDS = 15.0;
+  // Environment variable naming the log to replay without prompting, set by ./gradlew replayLogs
+  public static final String REPLAY_LOG_ENV = "REPLAY_LOG";
+
   public static final int PIGEON_ID = 20;
 
+  // Threads used to configure hardware at startup, one per swerve module
+  public static final int HARDWARE_INIT_THREADS = 4;
+
   public static final int FALCON_500_MAX_RPM = 6380;
   public static final int CTRE_TALONFX_ENCODER_TICKS_PER_ROTATION = 2048;
   public static final int NEO_MAX_RPM = 5676;
@@ -39,11 +83,42 @@ public final class Constants {
       SdsModuleConfigurations.MK4I_L2.getDriveReduction() *
       SdsModuleConfigurations.MK4I_L2.getWheelDiameter() * Math.PI;
 
+  // Drive wheel velocity loop, the PID runs on the Falcon and the feedforward is sent as an arbitrary demand.
+  // Off until the gains below are replaced with ones measured with SysId, these are placeholders.
+  public static final boolean DRIVE_CLOSED_LOOP = false;
+  public static final double DRIVE_KP = 0.05;
+  public static final double DRIVE_KS_VOLTS = 0.15;
+  public static final double DRIVE_KV_VOLT_SECONDS_PER_METER = MAX_VOLTAGE / MAX_VELOCITY_METERS_PER_SECOND;
+  // Setpoint changes smaller than these aren't sent, unless the last write is older than the refresh period
+  public static final double DRIVE_SETPOINT_THRESHOLD = 1e-3;
+  public static final double TURN_SETPOINT_THRESHOLD_RADIANS = 1e-3;
+  public static final double ACTUATOR_REFRESH_SECONDS = 0.1;
+  // Loops averaged for the logged RMS wheel speed tracking error
+  public static final int DRIVE_TRACKING_ERROR_WINDOW = 50;
+  // Simulated drive velocity loop (volts per meter per second)
+  public static final double SIM_DRIVE_KP = 2.5;
+
+  // Teleop setpoint limits, module acceleration is kept under the traction limit
+  public static final double MAX_MODULE_ACCELERATION_METERS_PER_SECOND_SQUARED = 8.0;
+  public static final double MAX_STEER_VELOCITY_RADIANS_PER_SECOND = 20.0;
+
   public static final double MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND = MAX_VELOCITY_METERS_PER_SECOND /
       Math.hypot(DRIVETRAIN_TRACKWIDTH_METERS / 2.0,
           DRIVETRAIN_WHEELBASE_METERS / 2.0);
 
-  public static final SwerveDriveKinematics DRIVE_KINEMATICS = new SwerveDriveKinematics(
+  // Profiled heading snaps, with headroom under the max turn rate and the turn acceleration the modules allow
+  public static final double SNAP_MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND = 0.8
+      * MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND;
+  public static final double SNAP_MAX_ANGULAR_ACCELERATION_RADIANS_PER_SECOND_SQUARED = 0.8
+      * MAX_MODULE_ACCELERATION_METERS_PER_SECOND_SQUARED
+      / Math.hypot(DRIVETRAIN_TRACKWIDTH_METERS / 2.0, DRIVETRAIN_WHEELBASE_METERS / 2.0);
+  public static final double SNAP_KP = 4.0;
+  public static final double SNAP_KD = 0.0;
+  public static final double SNAP_TOLERANCE_DEGREES = 1.0;
+  public static final double SNAP_VELOCITY_TOLERANCE_RADIANS_PER_SECOND = 0.1;
+
+  // Module locations relative to robot center, in FL, FR, BL, BR order
+  public static final Translation2d[] MODULE_TRANSLATIONS = {
       // Front left
       new Translation2d(DRIVETRAIN_TRACKWIDTH_METERS / 2.0,
           Constants.DRIVETRAIN_WHEELBASE_METERS / 2.0),
@@ -55,7 +130,10 @@ public final class Constants {
           Constants.DRIVETRAIN_WHEELBASE_METERS / 2.0),
       // Back right
       new Translation2d(-DRIVETRAIN_TRACKWIDTH_METERS / 2.0,
-          -Constants.DRIVETRAIN_WHEELBASE_METERS / 2.0));
+          -Constants.DRIVETRAIN_WHEELBASE_METERS / 2.0)
+  };
+
+  public static final SwerveDriveKinematics DRIVE_KINEMATICS = new SwerveDriveKinematics(MODULE_TRANSLATIONS);
 
   public static final int FRONT_LEFT_DRIVE_MOTOR = 5;
   public static final int FRONT_LEFT_STEER_MOTOR = 6;
@@ -85,6 +163,27 @@ public final class Constants {
   public static final boolean BACK_RIGHT_TURN_MOTOR_INVERTED = true;
   public static final double BACK_RIGHT_STEER_OFFSET = 166.641;
 
+  // Odometry sample rate, the odometry thread clamps this to [100, 250] Hz
+  public static final double ODOMETRY_FREQUENCY_HZ = 200.0;
+  // Length of pose history kept for latency compensated lookups (seconds)
+  public static final double POSE_HISTORY_SECONDS = 1.5;
+  // Pitch estimate from the odometry samples, rate low pass and how long the integrated rate is trusted
+  public static final double PITCH_RATE_FILTER_TIME_CONSTANT_SECONDS = 0.03;
+  public static final double PITCH_FILTER_TIME_CONSTANT_SECONDS = 0.5;
+
+  // Charge station balancing, positive pitch is nose up and the robot drives uphill
+  // Robot relative speed the balance auto drives onto the station with
+  public static final double BALANCE_APPROACH_SPEED_METERS_PER_SECOND = -2.0;
+  public static final double BALANCE_KP = 0.025; // meters per second per degree
+  // How far ahead the pitch is predicted from its rate, so the robot brakes before the station tips
+  public static final double BALANCE_LOOKAHEAD_SECONDS = 0.3;
+  public static final double BALANCE_MAX_SPEED_METERS_PER_SECOND = 0.6;
+  public static final double BALANCE_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED = 1.5;
+  public static final double BALANCE_MAX_DECELERATION_METERS_PER_SECOND_SQUARED = 6.0;
+  public static final double BALANCE_LEVEL_TOLERANCE_DEGREES = 2.5;
+  // How long the station must stay level to count as settled
+  public static final double BALANCE_SETTLE_SECONDS = 1.0;
+
   public static final double DRIVE_CURRENT_LIMIT = 80.0;
   public static final int TURN_CURRENT_LIMIT = 40;
   public static final double DRIVE_CURRENT_THRESHOLD = 120.0;
@@ -111,6 +210,36 @@ public final class Constants {
   public static final double RIGHT_CAMERA_OFFSET_RIGHT = Units.inchesToMeters(-11.75);
   public static final double LEFT_CAMERA_OFFSET_BACK = Units.inchesToMeters(20);
   public static final double RIGHT_CAMERA_OFFSET_BACK = Units.inchesToMeters(20);
+  public static final double CAMERA_HEIGHT_METERS = Units.inchesToMeters(10);
+  public static final double CAMERA_PITCH_DEGREES = 0.0;
+  public static final Transform3d LEFT_ROBOT_TO_CAMERA = new Transform3d(
+      new Translation3d(-LEFT_CAMERA_OFFSET_BACK, -LEFT_CAMERA_OFFSET_RIGHT, CAMERA_HEIGHT_METERS),
+      new Rotation3d(0.0, -Math.toRadians(CAMERA_PITCH_DEGREES), 0.0));
+  public static final Transform3d RIGHT_ROBOT_TO_CAMERA = new Transform3d(
+      new Translation3d(-RIGHT_CAMERA_OFFSET_BACK, -RIGHT_CAMERA_OFFSET_RIGHT, CAMERA_HEIGHT_METERS),
+      new Rotation3d(0.0, -Math.toRadians(CAMERA_PITCH_DEGREES), 0.0));
+  // Camera names as configured in PhotonVision
+  public static final String LEFT_CAMERA_NAME = "LeftCamera";
+  public static final String RIGHT_CAMERA_NAME = "RightCamera";
+
+  // AprilTag pose estimation, polled off the main loop and fused into the drivetrain pose
+  public static final double VISION_POLL_FREQUENCY_HZ = 50.0;
+  public static final double VISION_MAX_AMBIGUITY = 0.2;
+  public static final double VISION_MAX_DISTANCE_METERS = 4.0;
+  // Standard deviations for one tag at one meter
+  public static final double VISION_XY_STD_DEV_METERS = 0.05;
+  public static final double VISION_THETA_STD_DEV_RADIANS = 0.1;
+
+  // Simulated cameras
+  public static final int SIM_CAMERA_WIDTH_PIXELS = 960;
+  public static final int SIM_CAMERA_HEIGHT_PIXELS = 720;
+  public static final double SIM_CAMERA_DIAGONAL_FOV_DEGREES = 90.0;
+  public static final double SIM_CAMERA_ERROR_PIXELS = 0.25;
+  public static final double SIM_CAMERA_ERROR_STD_DEV_PIXELS = 0.08;
+  public static final double SIM_CAMERA_FPS = 30.0;
+  public static final double SIM_CAMERA_LATENCY_MS = 35.0;
+  public static final double SIM_CAMERA_LATENCY_STD_DEV_MS = 5.0;
+
   public static final double VISION_ROTATION_SCALING = 0.1;
   public static final double VISION_LATERAL_SCALING = 2;
 
@@ -141,7 +270,50 @@ public final class Constants {
       TURN_ENABLE_SOFT_LIMITS,
       NEO_MAX_RPM,
       NEO_MAX_RPM,
-      TURN_MOTOR_CONVERSION_FACTOR);
+      TURN_MOTOR_CONVERSION_FACTOR)
+      .withBurnFlash(true)
+      .withPositionWrapping(-Math.PI, +Math.PI)
+      .withIdleMode(IdleMode.kCoast)
+      .withCurrentLimit(TURN_CURRENT_LIMIT)
+      // Position is sampled by the odometry thread, faults and current only by the main loop
+      .withPeriodicFramePeriod(PeriodicFrame.kStatus0, 20)
+      .withPeriodicFramePeriod(PeriodicFrame.kStatus1, 20)
+      .withPeriodicFramePeriod(PeriodicFrame.kStatus2, 5)
+      .withPeriodicFramePeriod(PeriodicFrame.kStatus3, 500)
+      .withPeriodicFramePeriod(PeriodicFrame.kStatus4, 500)
+      .withPeriodicFramePeriod(PeriodicFrame.kStatus5, 500)
+      .withPeriodicFramePeriod(PeriodicFrame.kStatus6, 500);
+
+  // Drive motor velocity PID, the feedforward comes from DRIVE_KS_VOLTS and DRIVE_KV_VOLT_SECONDS_PER_METER
+  public static final TalonPIDConfig DRIVE_MOTOR_CONFIG = new TalonPIDConfig(
+      false,
+      false,
+      FALCON_500_MAX_RPM,
+      CTRE_TALONFX_ENCODER_TICKS_PER_ROTATION,
+      DRIVE_KP,
+      0.0,
+      0.0,
+      1.0,
+      1.0)
+      .withkF(0.0)
+      .withNeutralMode(NeutralMode.Brake)
+      // Open loop output stays relative to the battery, the module enables compensation for closed loop
+      .withVoltageCompensation(false)
+      .withStatorCurrentLimit(new StatorCurrentLimitConfiguration(true, DRIVE_CURRENT_LIMIT, DRIVE_CURRENT_THRESHOLD,
+          DRIVE_CURRENT_TIME_THRESHOLD))
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_1_General, 20)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, 5)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_Brushless_Current, 20)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat, 250)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_10_Targets, 255)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_12_Feedback1, 255)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, 255)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_14_Turn_PIDF1, 255)
+      .withStatusFramePeriod(StatusFrameEnhanced.Status_21_FeedbackIntegrated, 255);
+
+  // CANCoders are only read for the absolute position, faults are never read
+  public static final int STEER_ENCODER_SENSOR_DATA_PERIOD_MS = 20;
+  public static final int STEER_ENCODER_FAULTS_PERIOD_MS = 255;
 
   public static final int ELBOW_MOTOR = 11;
   public static final int SHOULDER_MOTOR = 10;
@@ -204,4 +376,10 @@ public final class Constants {
   public static final double AUTO_THETA_KI = 0.0;
   public static final double AUTO_THETA_KD = 0.0;
 
+  // Path constraints autos use, paths are compiled at build time with these
+  public static final double AUTO_MAX_VELOCITY_METERS_PER_SECOND = 2.0;
+  public static final double AUTO_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED = 2.0;
+  // Trajectories kept in memory, each path and constraint pair uses one per alliance
+  public static final int TRAJECTORY_STORE_CAPACITY = 16;
+
 }
\ No newline at end of file
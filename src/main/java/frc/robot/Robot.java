@@ -16,9 +16,19 @@ import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.PowerDistribution;
 import edu.wpi.first.wpilibj.PowerDistribution.ModuleType;
 import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.Mode;
+import frc.robot.utils.ActuatorOutput;
+import frc.robot.utils.AsyncLogWriter;
+import frc.robot.utils.CANBusLoad;
+import frc.robot.utils.DeviceConfigs;
+import frc.robot.utils.Diagnostics;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.Telemetry;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -30,6 +40,8 @@ import edu.wpi.first.wpilibj2.command.CommandScheduler;
  * project.
  */
 public class Robot extends LoggedRobot {
+  private static final String SIM_AUTO = System.getenv(Constants.SIM_AUTO_ENV);
+  private static final String REPLAY_LOG = System.getenv(Constants.REPLAY_LOG_ENV);
 
   private Command m_autonomousCommand;
 
@@ -39,6 +51,13 @@ public class Robot extends LoggedRobot {
 
   private RobotContainer m_robotContainer;
 
+  // Only on the real robot
+  private AsyncLogWriter m_logWriter;
+
+  // Headless simulated auto run
+  private long m_simAutoStartNanos;
+  private double m_simAutoStartSeconds;
+
   /**
    * This function is run when the robot is first started up and should be used
    * for any
@@ -48,23 +67,69 @@ public class Robot extends LoggedRobot {
   public void robotInit() {
     Logger.getInstance().recordMetadata("ProjectName", "MyProject"); // Set a metadata value
 
-    if (isReal()) {
-        Logger.getInstance().addDataReceiver(new WPILOGWriter("/media/sda1/")); // Log to a USB stick
+    switch (getMode()) {
+      case REAL:
+        // Log to a USB stick from a background thread
+        m_logWriter = new AsyncLogWriter(new WPILOGWriter("/media/sda1/"), Constants.LOG_QUEUE_CAPACITY);
+        Logger.getInstance().addDataReceiver(m_logWriter);
         Logger.getInstance().addDataReceiver(new NT4Publisher()); // Publish data to NetworkTables
         var pdh = new PowerDistribution(1, ModuleType.kRev); // Enables power distribution logging
         pdh.setSwitchableChannel(true);
         pdh.close();
-    } else {
+        break;
+
+      case SIM:
+        Logger.getInstance().addDataReceiver(new NT4Publisher()); // Publish data to NetworkTables
+        if (getSimAuto() != null) {
+          // Headless auto run, step the simulated clock one loop at a time as fast as possible
+          setUseTiming(false);
+          SimHooks.pauseTiming();
+        }
+        break;
+
+      case REPLAY:
         setUseTiming(false); // Run as fast as possible
-        String logPath = LogFileUtil.findReplayLog(); // Pull the replay log from AdvantageScope (or prompt the user)
+        // Use the log given by a batch replay, otherwise pull it from AdvantageScope (or prompt the user)
+        String logPath = REPLAY_LOG != null ? REPLAY_LOG : LogFileUtil.findReplayLog();
         Logger.getInstance().setReplaySource(new WPILOGReader(logPath)); // Read replay log
         Logger.getInstance().addDataReceiver(new WPILOGWriter(LogFileUtil.addPathSuffix(logPath, "_sim"))); // Save outputs to a new log
+        break;
     }
 
     // Logger.getInstance().disableDeterministicTimestamps() // See "Deterministic Timestamps" in the "Understanding Data Flow" page
     Logger.getInstance().start(); // Start logging! No more data receivers, replay sources, or metadata values may be added.
 
+    LoopProfiler.installCommandHooks();
+
     m_robotContainer = new RobotContainer();
+
+    // Devices register their status frame periods and configuration times as they're configured
+    Diagnostics.report(CANBusLoad.getReport());
+    Diagnostics.report(DeviceConfigs.getReport());
+    SmartDashboard.putNumber("CAN Status Load %", CANBusLoad.getEstimatedLoad() * 100.0);
+  }
+
+  /**
+   * @return The mode the robot code is running in, real on a roboRIO,
+   *         simulation for a headless auto run, replay for a batch replay and
+   *         {@link Constants#SIM_MODE} everywhere else
+   */
+  public static Mode getMode() {
+    if (isReal()) {
+      return Mode.REAL;
+    }
+    if (getSimAuto() != null) {
+      return Mode.SIM;
+    }
+    return REPLAY_LOG != null ? Mode.REPLAY : Constants.SIM_MODE;
+  }
+
+  /**
+   * @return Name of the auto to run headless in simulation, or null for a
+   *         normal simulation
+   */
+  private static String getSimAuto() {
+    return SIM_AUTO;
   }
 
   /**
@@ -86,7 +151,16 @@ public class Robot extends LoggedRobot {
     // and running subsystem periodic() methods. This must be called from the
     // robot's periodic
     // block in order for anything in the Command-based framework to work.
+    LoopProfiler.beginCycle();
     CommandScheduler.getInstance().run();
+    LoopProfiler.endCycle();
+    Telemetry.periodic();
+    ActuatorOutput.periodic();
+
+    if (m_logWriter != null) {
+      Logger.getInstance().recordOutput("Logging/QueueDepth", m_logWriter.getQueueDepth());
+      Logger.getInstance().recordOutput("Logging/StalledCycles", m_logWriter.getStalledCount());
+    }
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
@@ -96,7 +170,7 @@ public class Robot extends LoggedRobot {
 
   @Override
   public void disabledPeriodic() {
-    
+    m_robotContainer.disabledPeriodic();
   }
   /**
    * This autonomous runs the autonomous command selected by your
@@ -160,10 +234,38 @@ public class Robot extends LoggedRobot {
   /** This function is called once when the robot is first started up. */
   @Override
   public void simulationInit() {
+    String simAuto = getSimAuto();
+    if (simAuto == null) {
+      return;
+    }
+
+    m_robotContainer.selectAuto(simAuto);
+    DriverStationSim.setDsAttached(true);
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+
+    m_simAutoStartNanos = System.nanoTime();
+    m_simAutoStartSeconds = Timer.getFPGATimestamp();
   }
 
   /** This function is called periodically whilst in simulation. */
   @Override
   public void simulationPeriodic() {
+    m_robotContainer.simulationPeriodic();
+    if (getSimAuto() == null) {
+      return;
+    }
+
+    SimHooks.stepTiming(Constants.LOOP_PERIOD_SECONDS);
+
+    double simSeconds = Timer.getFPGATimestamp() - m_simAutoStartSeconds;
+    if (simSeconds >= Constants.SIM_AUTO_SECONDS) {
+      double realSeconds = (System.nanoTime() - m_simAutoStartNanos) / 1e9;
+      System.out.printf("Simulated %.1f s of auto in %.2f s (%.1fx real time), final pose %s%n",
+          simSeconds, realSeconds, simSeconds / realSeconds, m_robotContainer.getPose());
+      Logger.getInstance().end();
+      System.exit(0);
+    }
   }
 }
@@ -4,10 +4,13 @@
 
 package frc.robot;
 
-import java.util.function.Supplier;
+import java.util.List;
 
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
@@ -15,9 +18,25 @@ import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 import frc.robot.commands.ScoreAlign;
+import frc.robot.commands.autonomous.AutoRoutineCache;
+import frc.robot.commands.autonomous.BalanceAuto;
+import frc.robot.commands.autonomous.BalanceCommand;
 import frc.robot.commands.autonomous.BasePathAuto;
 import frc.robot.commands.autonomous.DriveUntilCommand;
+import frc.robot.subsystems.DriveSim;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.GyroIO;
+import frc.robot.subsystems.GyroIOPigeon;
+import frc.robot.subsystems.GyroIOSim;
+import frc.robot.subsystems.SwerveModuleIO;
+import frc.robot.subsystems.SwerveModuleIOReal;
+import frc.robot.subsystems.SwerveModuleIOSim;
+import frc.robot.subsystems.Vision;
+import frc.robot.subsystems.VisionIO;
+import frc.robot.subsystems.VisionIOPhoton;
+import frc.robot.subsystems.VisionSim;
+import frc.robot.utils.ParallelInit;
+import frc.robot.utils.TrajectoryStore;
 
 /**
  * This class is where the bulk of the robot should be declared. Since
@@ -30,9 +49,13 @@ import frc.robot.subsystems.DriveSubsystem;
  */
 public class RobotContainer {
   // The robot's subsystems and commands are defined here...
-  private final DriveSubsystem m_driveSubsystem = new DriveSubsystem();
+  private final DriveSubsystem m_driveSubsystem;
+  private final Vision m_vision;
+  // Only in simulation
+  private VisionSim m_visionSim;
+  private DriveSim m_driveSim;
 
-  private final SendableChooser<Supplier<Command>> m_autoChooser = new SendableChooser<>();
+  private final AutoRoutineCache m_autoChooser = new AutoRoutineCache();
   private boolean isAuto;
 
   private final CommandXboxController m_primaryController = new CommandXboxController(0);
@@ -42,6 +65,97 @@ public class RobotContainer {
    * The container for the robot. Contains subsystems, OI devices, and commands.
    */
   public RobotContainer() {
+    AprilTagFieldLayout fieldLayout = Vision.loadFieldLayout();
+
+    switch (Robot.getMode()) {
+      case REAL:
+        // Module configuration is blocking CAN traffic, so the modules are brought up together.
+        // A module that fails is only a placeholder so the drivetrain can be built, which is then disabled.
+        ParallelInit<SwerveModuleIO> moduleInit = new ParallelInit<>("ModuleInit", Constants.HARDWARE_INIT_THREADS);
+        moduleInit.submit("FrontLeft", () -> new SwerveModuleIOReal(
+            Constants.FRONT_LEFT_DRIVE_MOTOR,
+            Constants.FRONT_LEFT_STEER_MOTOR,
+            Constants.FRONT_LEFT_STEER_ENCODER,
+            Constants.DRIVE_MOTOR_CONFIG,
+            Constants.TURN_MOTOR_CONFIG,
+            Constants.FRONT_LEFT_DRIVE_MOTOR_INVERTED,
+            Constants.FRONT_LEFT_TURN_MOTOR_INVERTED),
+            () -> new SwerveModuleIO() {});
+        moduleInit.submit("FrontRight", () -> new SwerveModuleIOReal(
+            Constants.FRONT_RIGHT_DRIVE_MOTOR,
+            Constants.FRONT_RIGHT_STEER_MOTOR,
+            Constants.FRONT_RIGHT_STEER_ENCODER,
+            Constants.DRIVE_MOTOR_CONFIG,
+            Constants.TURN_MOTOR_CONFIG,
+            Constants.FRONT_RIGHT_DRIVE_MOTOR_INVERTED,
+            Constants.FRONT_RIGHT_TURN_MOTOR_INVERTED),
+            () -> new SwerveModuleIO() {});
+        moduleInit.submit("BackLeft", () -> new SwerveModuleIOReal(
+            Constants.BACK_LEFT_DRIVE_MOTOR,
+            Constants.BACK_LEFT_STEER_MOTOR,
+            Constants.BACK_LEFT_STEER_ENCODER,
+            Constants.DRIVE_MOTOR_CONFIG,
+            Constants.TURN_MOTOR_CONFIG,
+            Constants.BACK_LEFT_DRIVE_MOTOR_INVERTED,
+            Constants.BACK_LEFT_TURN_MOTOR_INVERTED),
+            () -> new SwerveModuleIO() {});
+        moduleInit.submit("BackRight", () -> new SwerveModuleIOReal(
+            Constants.BACK_RIGHT_DRIVE_MOTOR,
+            Constants.BACK_RIGHT_STEER_MOTOR,
+            Constants.BACK_RIGHT_STEER_ENCODER,
+            Constants.DRIVE_MOTOR_CONFIG,
+            Constants.TURN_MOTOR_CONFIG,
+            Constants.BACK_RIGHT_DRIVE_MOTOR_INVERTED,
+            Constants.BACK_RIGHT_TURN_MOTOR_INVERTED),
+            () -> new SwerveModuleIO() {});
+
+        GyroIO gyroIO = new GyroIOPigeon(Constants.PIGEON_ID, 1.0 / Constants.ODOMETRY_FREQUENCY_HZ);
+        List<SwerveModuleIO> moduleIOs = moduleInit.join();
+        m_driveSubsystem = new DriveSubsystem(gyroIO,
+            moduleIOs.get(0), moduleIOs.get(1), moduleIOs.get(2), moduleIOs.get(3));
+        if (!moduleInit.getFailures().isEmpty()) {
+          // Driving on the remaining modules would be unpredictable, keep the drivetrain stopped
+          m_driveSubsystem.disable("modules failed to initialize: " + String.join(", ", moduleInit.getFailures()));
+        }
+        m_vision = new Vision(m_driveSubsystem, fieldLayout,
+            new VisionIOPhoton(Constants.LEFT_CAMERA_NAME, Constants.LEFT_ROBOT_TO_CAMERA, fieldLayout),
+            new VisionIOPhoton(Constants.RIGHT_CAMERA_NAME, Constants.RIGHT_ROBOT_TO_CAMERA, fieldLayout));
+        break;
+
+      case SIM:
+        SwerveModuleIOSim frontLeftSim = new SwerveModuleIOSim(Constants.FRONT_LEFT_STEER_OFFSET);
+        SwerveModuleIOSim frontRightSim = new SwerveModuleIOSim(Constants.FRONT_RIGHT_STEER_OFFSET);
+        SwerveModuleIOSim backLeftSim = new SwerveModuleIOSim(Constants.BACK_LEFT_STEER_OFFSET);
+        SwerveModuleIOSim backRightSim = new SwerveModuleIOSim(Constants.BACK_RIGHT_STEER_OFFSET);
+        m_driveSubsystem = new DriveSubsystem(
+            new GyroIOSim(frontLeftSim, frontRightSim, backLeftSim, backRightSim),
+            frontLeftSim, frontRightSim, backLeftSim, backRightSim);
+        m_driveSim = new DriveSim(frontLeftSim, frontRightSim, backLeftSim, backRightSim);
+        m_driveSubsystem.setPoseResetListener(m_driveSim::resetPose);
+
+        // PhotonLib's simulated cameras feed the same IO as the real ones
+        VisionIOPhoton leftCamera = new VisionIOPhoton(Constants.LEFT_CAMERA_NAME,
+            Constants.LEFT_ROBOT_TO_CAMERA, fieldLayout);
+        VisionIOPhoton rightCamera = new VisionIOPhoton(Constants.RIGHT_CAMERA_NAME,
+            Constants.RIGHT_ROBOT_TO_CAMERA, fieldLayout);
+        m_visionSim = new VisionSim(fieldLayout);
+        m_visionSim.addCamera(leftCamera, Constants.LEFT_ROBOT_TO_CAMERA);
+        m_visionSim.addCamera(rightCamera, Constants.RIGHT_ROBOT_TO_CAMERA);
+        m_vision = new Vision(m_driveSubsystem, fieldLayout, leftCamera, rightCamera);
+        break;
+
+      default:
+        // Replayed robot, inputs come from the log
+        m_driveSubsystem = new DriveSubsystem(
+            new GyroIO() {},
+            new SwerveModuleIO() {},
+            new SwerveModuleIO() {},
+            new SwerveModuleIO() {},
+            new SwerveModuleIO() {});
+        m_vision = new Vision(m_driveSubsystem, fieldLayout, new VisionIO() {}, new VisionIO() {});
+        break;
+    }
+
     m_driveSubsystem.setDefaultCommand(new RunCommand(() -> m_driveSubsystem.drive(
         modifyAxis(m_primaryController.getLeftY()) * Constants.MAX_VELOCITY_METERS_PER_SECOND,
         modifyAxis(m_primaryController.getLeftX()) * Constants.MAX_VELOCITY_METERS_PER_SECOND,
@@ -51,9 +165,12 @@ public class RobotContainer {
 
     m_autoChooser.setDefaultOption("Do Nothing", () -> new DriveUntilCommand(m_driveSubsystem, 0.0, 0.0, () -> true));
     
-    m_autoChooser.addOption("SQUARE", () -> new BasePathAuto(m_driveSubsystem, "SQUARE", 2, 2).getCommandAndStop());
+    m_autoChooser.addOption("SQUARE", new BasePathAuto(m_driveSubsystem, "SQUARE",
+        Constants.AUTO_MAX_VELOCITY_METERS_PER_SECOND, Constants.AUTO_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED));
+    m_autoChooser.addOption("Balance", () -> new BalanceAuto(m_driveSubsystem,
+        Constants.BALANCE_APPROACH_SPEED_METERS_PER_SECOND));
 
-    SmartDashboard.putData("Auto Chooser", m_autoChooser);
+    SmartDashboard.putData("Auto Chooser", m_autoChooser.getChooser());
 
     // Configure the trigger bindings
     configureBindings();
@@ -101,6 +218,9 @@ public class RobotContainer {
 
     m_primaryController.x()
       .whileTrue(new ScoreAlign(m_driveSubsystem));
+    // Hold to balance once on the charge station
+    m_primaryController.y()
+      .whileTrue(new BalanceCommand(m_driveSubsystem));
       // .onFalse(new InstantCommand(() -> m_driveSubsystem.stop()));
   }
 
@@ -114,12 +234,41 @@ public class RobotContainer {
    * @return the command to run in autonomous
    */
   public Command getAutonomousCommand() {
-    // An example command will be run in autonomous
-    var autoCommandSupplier = m_autoChooser.getSelected();
-    if (autoCommandSupplier != null) {
-      return autoCommandSupplier.get();
+    return m_autoChooser.getAutonomousCommand();
+  }
+
+  /**
+   * Selects an auto by name instead of from the dashboard, for headless simulation
+   *
+   * @param name Name of the auto
+   */
+  public void selectAuto(String name) {
+    m_autoChooser.selectOption(name);
+  }
+
+  /**
+   * @return Current drivetrain pose
+   */
+  public Pose2d getPose() {
+    return m_driveSubsystem.getPose();
+  }
+
+  /** Updates the simulated sensors that aren't part of an IO layer. */
+  public void simulationPeriodic() {
+    if (m_driveSim != null) {
+      // The cameras see the true pose, not the estimate they correct, so fusion errors show up against it
+      m_driveSim.update();
+      Logger.getInstance().recordOutput("Sim/TruePose", m_driveSim.getPose());
+      m_visionSim.update(m_driveSim.getPose());
     }
-    return null;
+  }
+
+  /** Gets the selected auto ready while disabled. */
+  public void disabledPeriodic() {
+    m_autoChooser.disabledPeriodic();
+
+    Logger.getInstance().recordOutput("Auto/TrajectoryStoreHits", TrajectoryStore.getHitCount());
+    Logger.getInstance().recordOutput("Auto/TrajectoryStoreMisses", TrajectoryStore.getMissCount());
   }
 
   public void teleopInit() {
@@ -130,7 +279,8 @@ public class RobotContainer {
     
   }
 
-  private static double modifyAxis(double value) {
+  // Package private for the benchmarks
+  static double modifyAxis(double value) {
     // Deadband
     value = MathUtil.applyDeadband(value, 0.05);
 
@@ -4,12 +4,26 @@
 
 package frc.robot;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
 import com.ctre.phoenix.motorcontrol.FeedbackDevice;
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.IdleMode;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+import com.revrobotics.REVLibError;
+import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkMaxLimitSwitch;
 import com.revrobotics.SparkMaxPIDController;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.utils.CANBusLoad;
+import frc.robot.utils.DeviceConfigs;
 
 /**
  * Automates the configuration of Spark PID and Smart Motion paramaters
@@ -18,6 +32,21 @@ public class SparkPIDConfig {
   private static final double MAX_VOLTAGE = 12.0;
   private static final double MIN_TOLERANCE = 1.0;
   private static final int PID_SLOT = 0;
+  private static final int CAN_TIMEOUT_MS = 20;
+  // Spark parameters are floats
+  private static final double PARAMETER_TOLERANCE = 1e-6;
+
+  // Approximate factory periodic frame periods in ms
+  private static final Map<PeriodicFrame, Integer> DEFAULT_FRAME_PERIODS = new EnumMap<>(PeriodicFrame.class);
+  static {
+    DEFAULT_FRAME_PERIODS.put(PeriodicFrame.kStatus0, 10);
+    DEFAULT_FRAME_PERIODS.put(PeriodicFrame.kStatus1, 20);
+    DEFAULT_FRAME_PERIODS.put(PeriodicFrame.kStatus2, 20);
+    DEFAULT_FRAME_PERIODS.put(PeriodicFrame.kStatus3, 50);
+    DEFAULT_FRAME_PERIODS.put(PeriodicFrame.kStatus4, 20);
+    DEFAULT_FRAME_PERIODS.put(PeriodicFrame.kStatus5, 200);
+    DEFAULT_FRAME_PERIODS.put(PeriodicFrame.kStatus6, 200);
+  }
 
   private boolean m_smartMotion = false;
   private boolean m_enableSoftLimits = true;
@@ -35,8 +64,14 @@ public class SparkPIDConfig {
 
   private double m_velocityRPM = 1.0;
   private double m_accelerationRPMPerSec = 1.0;
+  private boolean m_burnFlash = false;
+  private boolean m_positionWrapping = false;
+  private double m_wrappingMinInput = 0.0;
+  private double m_wrappingMaxInput = 0.0;
+  private IdleMode m_idleMode = null;
+  private int m_currentLimit = 0;
 
-  private SparkMaxPIDController m_pidController;
+  private final Map<PeriodicFrame, Integer> m_framePeriods = new EnumMap<>(PeriodicFrame.class);
 
   public SparkPIDConfig(boolean invertMotor, double maxRPM,
       double kP, double kI, double kD, double mechanicalEfficiency, double tolerance,
@@ -85,6 +120,13 @@ public class SparkPIDConfig {
 
   /**
    * Initializes Talon PID and Smart Motion parameters
+   * <p>
+   * If the Spark was last configured with different settings it's factory
+   * reset and fully configured. Otherwise the current settings are read back
+   * and only the ones that differ are written. Every write is acknowledged and
+   * checked, and the fingerprint is only saved and flash only burned (when
+   * {@link #withBurnFlash(boolean)} is set) if all of them succeeded, so a
+   * failed configure is retried from scratch on the next boot.
    * 
    * @param spark              Spark motor controller to apply settings to
    * @param feedbackSensor     Feedback device to use for Spark PID
@@ -93,52 +135,246 @@ public class SparkPIDConfig {
    */
   public SparkMaxPIDController initializeSparkPID(CANSparkMax spark,
       boolean forwardLimitSwitch, boolean reverseLimitSwitch) {
-    // Reset Talon to default
-    spark.restoreFactoryDefaults();
+    long start = System.nanoTime();
+    String deviceName = "SparkMax " + spark.getDeviceId();
+    int fingerprint = getFingerprint(forwardLimitSwitch, reverseLimitSwitch);
+    boolean full = !DeviceConfigs.isApplied(deviceName, fingerprint);
+
+    m_kF = 1 / m_maxRPM;
 
     // Get PID controller
-    m_pidController = spark.getPIDController();
+    SparkMaxPIDController pidController = spark.getPIDController();
+    RelativeEncoder encoder = spark.getEncoder();
+    SparkMaxLimitSwitch forwardSwitch = spark.getForwardLimitSwitch(SparkMaxLimitSwitch.Type.kNormallyOpen);
+    SparkMaxLimitSwitch reverseSwitch = spark.getReverseLimitSwitch(SparkMaxLimitSwitch.Type.kNormallyOpen);
+
+    spark.setCANTimeout(CAN_TIMEOUT_MS);
+    List<Supplier<REVLibError>> writes = new ArrayList<>();
+    if (full) {
+      // Reset Spark to default
+      writes.add(spark::restoreFactoryDefaults);
+      // Invert motor if required, callers may change this afterwards so it's only set on a full configure
+      writes.add(() -> {
+        spark.setInverted(m_invertMotor);
+        return spark.getLastError();
+      });
+    }
 
-    spark.getEncoder().setPositionConversionFactor(m_conversionFactor);
+    // Settings are only read back when they weren't just reset
+    if (full || differs(encoder.getPositionConversionFactor(), m_conversionFactor)) {
+      writes.add(() -> encoder.setPositionConversionFactor(m_conversionFactor));
+    }
 
     // Configure forward and reverse soft limits
     if (m_enableSoftLimits) {
-      spark.setSoftLimit(CANSparkMax.SoftLimitDirection.kForward, (float) m_upperLimit);
-      spark.enableSoftLimit(CANSparkMax.SoftLimitDirection.kForward, true);
-      spark.setSoftLimit(CANSparkMax.SoftLimitDirection.kReverse, (float) m_lowerLimit);
-      spark.enableSoftLimit(CANSparkMax.SoftLimitDirection.kReverse, true);
+      if (full || differs(spark.getSoftLimit(CANSparkMax.SoftLimitDirection.kForward), m_upperLimit)) {
+        writes.add(() -> spark.setSoftLimit(CANSparkMax.SoftLimitDirection.kForward, (float) m_upperLimit));
+      }
+      if (full || differs(spark.getSoftLimit(CANSparkMax.SoftLimitDirection.kReverse), m_lowerLimit)) {
+        writes.add(() -> spark.setSoftLimit(CANSparkMax.SoftLimitDirection.kReverse, (float) m_lowerLimit));
+      }
+    }
+    if ((full && m_enableSoftLimits)
+        || (!full && spark.isSoftLimitEnabled(CANSparkMax.SoftLimitDirection.kForward) != m_enableSoftLimits)) {
+      writes.add(() -> spark.enableSoftLimit(CANSparkMax.SoftLimitDirection.kForward, m_enableSoftLimits));
+    }
+    if ((full && m_enableSoftLimits)
+        || (!full && spark.isSoftLimitEnabled(CANSparkMax.SoftLimitDirection.kReverse) != m_enableSoftLimits)) {
+      writes.add(() -> spark.enableSoftLimit(CANSparkMax.SoftLimitDirection.kReverse, m_enableSoftLimits));
     }
 
     // Configure forward and reverse limit switches if required
-    if (forwardLimitSwitch)
-      spark.getForwardLimitSwitch(SparkMaxLimitSwitch.Type.kNormallyOpen).enableLimitSwitch(true);
-    if (reverseLimitSwitch)
-      spark.getReverseLimitSwitch(SparkMaxLimitSwitch.Type.kNormallyOpen).enableLimitSwitch(true);
-
-    // Invert motor if required
-    spark.setInverted(m_invertMotor);
+    if ((full && forwardLimitSwitch) || (!full && forwardSwitch.isLimitSwitchEnabled() != forwardLimitSwitch)) {
+      writes.add(() -> forwardSwitch.enableLimitSwitch(forwardLimitSwitch));
+    }
+    if ((full && reverseLimitSwitch) || (!full && reverseSwitch.isLimitSwitchEnabled() != reverseLimitSwitch)) {
+      writes.add(() -> reverseSwitch.enableLimitSwitch(reverseLimitSwitch));
+    }
 
     // Configure PID values
-    m_pidController.setP(m_kP, PID_SLOT);
-    m_pidController.setI(m_kI, PID_SLOT);
-    m_pidController.setD(m_kD, PID_SLOT);
-    m_pidController.setOutputRange(-1.0, +1.0);
+    if (full || differs(pidController.getP(PID_SLOT), m_kP)) {
+      writes.add(() -> pidController.setP(m_kP, PID_SLOT));
+    }
+    if (full || differs(pidController.getI(PID_SLOT), m_kI)) {
+      writes.add(() -> pidController.setI(m_kI, PID_SLOT));
+    }
+    if (full || differs(pidController.getD(PID_SLOT), m_kD)) {
+      writes.add(() -> pidController.setD(m_kD, PID_SLOT));
+    }
+    if (full || differs(pidController.getOutputMin(PID_SLOT), -1.0)
+        || differs(pidController.getOutputMax(PID_SLOT), +1.0)) {
+      writes.add(() -> pidController.setOutputRange(-1.0, +1.0, PID_SLOT));
+    }
+    if (full || differs(pidController.getIZone(PID_SLOT), m_tolerance * 2)) {
+      writes.add(() -> pidController.setIZone(m_tolerance * 2, PID_SLOT));
+    }
+    if (full || differs(pidController.getFF(PID_SLOT), m_kF)) {
+      writes.add(() -> pidController.setFF(m_kF, PID_SLOT));
+    }
 
-    m_pidController.setIZone(m_tolerance * 2, PID_SLOT);
+    // Configure position wrapping if required
+    if (m_positionWrapping) {
+      if (full || !pidController.getPositionPIDWrappingEnabled()) {
+        writes.add(() -> pidController.setPositionPIDWrappingEnabled(true));
+      }
+      if (full || differs(pidController.getPositionPIDWrappingMinInput(), m_wrappingMinInput)) {
+        writes.add(() -> pidController.setPositionPIDWrappingMinInput(m_wrappingMinInput));
+      }
+      if (full || differs(pidController.getPositionPIDWrappingMaxInput(), m_wrappingMaxInput)) {
+        writes.add(() -> pidController.setPositionPIDWrappingMaxInput(m_wrappingMaxInput));
+      }
+    }
 
-    m_kF = 1 / m_maxRPM;
-    m_pidController.setFF(m_kF, PID_SLOT);
+    // Configure idle mode if required
+    if (m_idleMode != null && (full || spark.getIdleMode() != m_idleMode)) {
+      writes.add(() -> spark.setIdleMode(m_idleMode));
+    }
+
+    // Configure current limit if required, it can't be read back so only the fingerprint covers it
+    if (m_currentLimit > 0 && full) {
+      writes.add(() -> spark.setSmartCurrentLimit(m_currentLimit));
+    }
 
     // Enable voltage compensation
-    spark.enableVoltageCompensation(MAX_VOLTAGE);
+    if (full || differs(spark.getVoltageCompensationNominalVoltage(), MAX_VOLTAGE)) {
+      writes.add(() -> spark.enableVoltageCompensation(MAX_VOLTAGE));
+    }
 
     // Configure Smart Motion values
     if (m_smartMotion) {
-      m_pidController.setSmartMotionMaxVelocity(m_velocityRPM, PID_SLOT);
-      m_pidController.setSmartMotionMaxAccel(m_accelerationRPMPerSec, PID_SLOT);
+      if (full || differs(pidController.getSmartMotionMaxVelocity(PID_SLOT), m_velocityRPM)) {
+        writes.add(() -> pidController.setSmartMotionMaxVelocity(m_velocityRPM, PID_SLOT));
+      }
+      if (full || differs(pidController.getSmartMotionMaxAccel(PID_SLOT), m_accelerationRPMPerSec)) {
+        writes.add(() -> pidController.setSmartMotionMaxAccel(m_accelerationRPMPerSec, PID_SLOT));
+      }
+    }
+
+    int failures = 0;
+    for (Supplier<REVLibError> write : writes) {
+      if (write.get() != REVLibError.kOk) {
+        failures++;
+      }
+    }
+    failures += initializePeriodicFrames(spark);
+
+    if (failures > 0) {
+      DriverStation.reportWarning(deviceName + ": " + failures + " configuration writes failed", false);
+    } else {
+      if (m_burnFlash && !writes.isEmpty() && spark.burnFlash() != REVLibError.kOk) {
+        DriverStation.reportWarning(deviceName + ": burning flash failed", false);
+      }
+      if (full) {
+        DeviceConfigs.setApplied(deviceName, fingerprint);
+      }
+    }
+    DeviceConfigs.record(deviceName, start, writes.size(), failures, full);
+
+    return pidController;
+  }
+
+  /**
+   * Sets whether settings are burned to flash after they're changed, so they
+   * survive a power cycle
+   * 
+   * @param burnFlash Burn settings to flash
+   * @return This config, for chaining
+   */
+  public SparkPIDConfig withBurnFlash(boolean burnFlash) {
+    m_burnFlash = burnFlash;
+    return this;
+  }
+
+  /**
+   * Wraps the position PID input, so the controller takes the short way
+   * around, for example for swerve steering in radians
+   * 
+   * @param minInput Smallest input, the same position as maxInput
+   * @param maxInput Largest input
+   * @return This config, for chaining
+   */
+  public SparkPIDConfig withPositionWrapping(double minInput, double maxInput) {
+    m_positionWrapping = true;
+    m_wrappingMinInput = minInput;
+    m_wrappingMaxInput = maxInput;
+    return this;
+  }
+
+  /**
+   * Sets the idle mode, by default the Spark keeps its current one
+   * 
+   * @param idleMode Idle mode
+   * @return This config, for chaining
+   */
+  public SparkPIDConfig withIdleMode(IdleMode idleMode) {
+    m_idleMode = idleMode;
+    return this;
+  }
+
+  /**
+   * Sets the smart current limit
+   * 
+   * @param currentLimitAmps Current limit in amps
+   * @return This config, for chaining
+   */
+  public SparkPIDConfig withCurrentLimit(int currentLimitAmps) {
+    m_currentLimit = currentLimitAmps;
+    return this;
+  }
+
+  /**
+   * Sets how often the Spark sends a periodic status frame
+   * <p>
+   * Frames that aren't set keep their factory period.
+   * 
+   * @param frame    Periodic status frame
+   * @param periodMs Frame period in milliseconds
+   * @return This config, for chaining
+   */
+  public SparkPIDConfig withPeriodicFramePeriod(PeriodicFrame frame, int periodMs) {
+    m_framePeriods.put(frame, periodMs);
+    return this;
+  }
+
+  /**
+   * Applies the periodic frame periods to a Spark and records them for the
+   * CAN bus load estimate
+   * <p>
+   * Called by {@link SparkPIDConfig#initializeSparkPID(CANSparkMax, boolean, boolean)}
+   * 
+   * @param spark Spark motor controller to apply settings to
+   * @return Number of frame periods that failed to set
+   */
+  public int initializePeriodicFrames(CANSparkMax spark) {
+    int failures = 0;
+    for (Map.Entry<PeriodicFrame, Integer> entry : m_framePeriods.entrySet()) {
+      if (spark.setPeriodicFramePeriod(entry.getKey(), entry.getValue()) != REVLibError.kOk) {
+        failures++;
+      }
     }
 
-    return m_pidController;
+    String deviceName = "SparkMax " + spark.getDeviceId();
+    CANBusLoad.setFramePeriods(deviceName, DEFAULT_FRAME_PERIODS);
+    CANBusLoad.setFramePeriods(deviceName, m_framePeriods);
+    return failures;
+  }
+
+  private int getFingerprint(boolean forwardLimitSwitch, boolean reverseLimitSwitch) {
+    return Objects.hash(m_smartMotion, m_enableSoftLimits, m_invertMotor, m_maxRPM, m_kP, m_kI, m_kD,
+        m_tolerance, m_lowerLimit, m_upperLimit, m_conversionFactor, m_velocityRPM, m_accelerationRPMPerSec,
+        forwardLimitSwitch, reverseLimitSwitch, m_positionWrapping, m_wrappingMinInput, m_wrappingMaxInput,
+        m_idleMode == null ? -1 : m_idleMode.value, m_currentLimit);
+  }
+
+  private static boolean differs(double current, double target) {
+    return Math.abs(current - target) > PARAMETER_TOLERANCE * Math.max(1.0, Math.abs(target));
+  }
+
+  /**
+   * @return Periodic frame periods in milliseconds set on this config
+   */
+  public Map<PeriodicFrame, Integer> getPeriodicFramePeriods() {
+    return m_framePeriods;
   }
 
   /**
@@ -7,12 +7,27 @@
 
 package frc.robot;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.motorcontrol.FeedbackDevice;
 import com.ctre.phoenix.motorcontrol.LimitSwitchNormal;
 import com.ctre.phoenix.motorcontrol.LimitSwitchSource;
+import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.StatorCurrentLimitConfiguration;
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
 import com.ctre.phoenix.motorcontrol.can.BaseTalon;
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.utils.CANBusLoad;
+import frc.robot.utils.DeviceConfigs;
 
 /**
  * Automates the configuration of Talon PID and MotionMagic parameters
@@ -24,6 +39,24 @@ public class TalonPIDConfig {
   private static final int MIN_MOTION_SMOOTHING = 0;
   private static final int MAX_MOTION_SMOOTHING = 8;
   private static final int PID_SLOT = 0;
+  private static final int PID_INDEX = 0;
+  private static final int CONFIG_TIMEOUT_MS = 50;
+  // Custom parameter holding the fingerprint of the config the Talon was last configured with
+  private static final int FINGERPRINT_PARAM = 0;
+
+  // Approximate factory status frame periods in ms
+  private static final Map<StatusFrameEnhanced, Integer> DEFAULT_STATUS_FRAME_PERIODS = new EnumMap<>(StatusFrameEnhanced.class);
+  static {
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_1_General, 10);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_2_Feedback0, 20);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_4_AinTempVbat, 160);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_10_Targets, 160);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_12_Feedback1, 250);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_13_Base_PIDF0, 160);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_14_Turn_PIDF1, 250);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_21_FeedbackIntegrated, 250);
+    DEFAULT_STATUS_FRAME_PERIODS.put(StatusFrameEnhanced.Status_Brushless_Current, 50);
+  }
 
   private boolean m_motionMagic = false;
   private boolean m_enableSoftLimits = true;
@@ -36,6 +69,7 @@ public class TalonPIDConfig {
   private double m_kI = 0.0;
   private double m_kD = 0.0;
   private double m_kF = 0.0;
+  private double m_kFOverride = Double.NaN;
   private double m_tolerance = 1.0;
   private double m_lowerLimit = 0.0;
   private double m_upperLimit = 0.0;
@@ -43,6 +77,11 @@ public class TalonPIDConfig {
   private double m_velocityRPM = 1.0;
   private double m_accelerationRPMPerSec = 1.0;
   private int m_motionSmoothing = 0;
+  private NeutralMode m_neutralMode = NeutralMode.EEPROMSetting;
+  private boolean m_voltageCompensation = true;
+  private StatorCurrentLimitConfiguration m_statorCurrentLimit = null;
+
+  private final Map<StatusFrameEnhanced, Integer> m_statusFramePeriods = new EnumMap<>(StatusFrameEnhanced.class);
 
   /**
    * Create a TalonPIDConfig, without MotionMagic parameters
@@ -118,6 +157,15 @@ public class TalonPIDConfig {
 
   /**
    * Initializes Talon PID and MotionMagic parameters
+   * <p>
+   * Talon settings persist, so a fingerprint of this config is stored in a
+   * custom parameter on the Talon. When it matches, the Talon already has
+   * these settings and only the non-persistent ones are sent. The fingerprint
+   * only hashes values with a stable hash code, so it matches across reboots.
+   * Otherwise the Talon is factory reset and fully configured. Every write
+   * waits for the Talon to acknowledge it, and the fingerprint is only stored
+   * if all of them succeeded, so a failed configure is retried on the next
+   * boot.
    * 
    * @param talon              Talon motor controller to apply settings to
    * @param feedbackDevice     Feedback device to use for Talon PID
@@ -126,57 +174,167 @@ public class TalonPIDConfig {
    */
   public void initializeTalonPID(BaseTalon talon, FeedbackDevice feedbackDevice,
       boolean forwardLimitSwitch, boolean reverseLimitSwitch) {
+    long start = System.nanoTime();
+    String deviceName = "Talon " + talon.getDeviceID();
+    int fingerprint = getFingerprint(feedbackDevice, forwardLimitSwitch, reverseLimitSwitch);
+    m_kF = calculatekF();
+
+    if (talon.configGetCustomParam(FINGERPRINT_PARAM, CONFIG_TIMEOUT_MS) == fingerprint) {
+      applyNonPersistentSettings(talon);
+      DeviceConfigs.record(deviceName, start, 0, 0, false);
+      return;
+    }
+
+    List<Supplier<ErrorCode>> writes = new ArrayList<>();
+
     // Reset Talon to default
-    talon.configFactoryDefault();
+    writes.add(() -> talon.configFactoryDefault(CONFIG_TIMEOUT_MS));
 
     // Configure feedback sensor
-    talon.configSelectedFeedbackSensor(feedbackDevice);
+    writes.add(() -> talon.configSelectedFeedbackSensor(feedbackDevice, PID_INDEX, CONFIG_TIMEOUT_MS));
 
     // Configure forward and reverse soft limits
     if (m_enableSoftLimits) {
-      talon.configForwardSoftLimitThreshold(m_upperLimit);
-      talon.configForwardSoftLimitEnable(true);
-      talon.configReverseSoftLimitThreshold(m_lowerLimit);
-      talon.configReverseSoftLimitEnable(true);
+      writes.add(() -> talon.configForwardSoftLimitThreshold(m_upperLimit, CONFIG_TIMEOUT_MS));
+      writes.add(() -> talon.configForwardSoftLimitEnable(true, CONFIG_TIMEOUT_MS));
+      writes.add(() -> talon.configReverseSoftLimitThreshold(m_lowerLimit, CONFIG_TIMEOUT_MS));
+      writes.add(() -> talon.configReverseSoftLimitEnable(true, CONFIG_TIMEOUT_MS));
     }
 
     // Configure forward and reverse limit switches if required
     if (forwardLimitSwitch) {
-      talon.configForwardLimitSwitchSource(LimitSwitchSource.FeedbackConnector, LimitSwitchNormal.NormallyOpen);
+      writes.add(() -> talon.configForwardLimitSwitchSource(LimitSwitchSource.FeedbackConnector,
+          LimitSwitchNormal.NormallyOpen, CONFIG_TIMEOUT_MS));
     }
     if (reverseLimitSwitch) {
-      talon.configReverseLimitSwitchSource(LimitSwitchSource.FeedbackConnector, LimitSwitchNormal.NormallyOpen);
+      writes.add(() -> talon.configReverseLimitSwitchSource(LimitSwitchSource.FeedbackConnector,
+          LimitSwitchNormal.NormallyOpen, CONFIG_TIMEOUT_MS));
     }
 
-    // Set sensor phase and invert motor if required
-    talon.setSensorPhase(m_sensorPhase);
-    talon.setInverted(m_invertMotor);
-
     // Configure PID values
-    talon.config_kP(PID_SLOT, m_kP);
-    talon.config_kI(PID_SLOT, m_kI);
-    talon.config_kD(PID_SLOT, m_kD);
-    talon.configAllowableClosedloopError(PID_SLOT, m_tolerance);
-    talon.configClosedLoopPeakOutput(PID_SLOT, 1.0);
+    writes.add(() -> talon.config_kP(PID_SLOT, m_kP, CONFIG_TIMEOUT_MS));
+    writes.add(() -> talon.config_kI(PID_SLOT, m_kI, CONFIG_TIMEOUT_MS));
+    writes.add(() -> talon.config_kD(PID_SLOT, m_kD, CONFIG_TIMEOUT_MS));
+    writes.add(() -> talon.configAllowableClosedloopError(PID_SLOT, m_tolerance, CONFIG_TIMEOUT_MS));
+    writes.add(() -> talon.configClosedLoopPeakOutput(PID_SLOT, 1.0, CONFIG_TIMEOUT_MS));
 
-    talon.config_IntegralZone(PID_SLOT, m_tolerance * 2);
+    writes.add(() -> talon.config_IntegralZone(PID_SLOT, m_tolerance * 2, CONFIG_TIMEOUT_MS));
 
-    m_kF = 1023 / rpmToTicksPer100ms(m_maxRPM);
-    talon.config_kF(PID_SLOT, m_kF);
+    writes.add(() -> talon.config_kF(PID_SLOT, m_kF, CONFIG_TIMEOUT_MS));
 
     // Configure motor deadband
-    talon.configNeutralDeadband(MOTOR_DEADBAND);
+    writes.add(() -> talon.configNeutralDeadband(MOTOR_DEADBAND, CONFIG_TIMEOUT_MS));
 
-    // Enable voltage compensation
-    talon.configVoltageCompSaturation(MAX_VOLTAGE);
-    talon.enableVoltageCompensation(true);
+    // Voltage compensation saturation, enabled with the non-persistent settings
+    writes.add(() -> talon.configVoltageCompSaturation(MAX_VOLTAGE, CONFIG_TIMEOUT_MS));
+
+    // Configure stator current limit if required, only Talon FX measures stator current
+    if (m_statorCurrentLimit != null && talon instanceof TalonFX) {
+      writes.add(() -> ((TalonFX) talon).configStatorCurrentLimit(m_statorCurrentLimit, CONFIG_TIMEOUT_MS));
+    }
 
     // Configure MotionMagic values
     if (m_motionMagic) {
-      talon.configMotionCruiseVelocity(rpmToTicksPer100ms(m_velocityRPM));
-      talon.configMotionAcceleration(rpmToTicksPer100ms(m_accelerationRPMPerSec));
-      talon.configMotionSCurveStrength(m_motionSmoothing);
+      writes.add(() -> talon.configMotionCruiseVelocity(rpmToTicksPer100ms(m_velocityRPM), CONFIG_TIMEOUT_MS));
+      writes.add(() -> talon.configMotionAcceleration(rpmToTicksPer100ms(m_accelerationRPMPerSec), CONFIG_TIMEOUT_MS));
+      writes.add(() -> talon.configMotionSCurveStrength(m_motionSmoothing, CONFIG_TIMEOUT_MS));
+    }
+
+    int failures = 0;
+    for (Supplier<ErrorCode> write : writes) {
+      if (write.get() != ErrorCode.OK) {
+        failures++;
+      }
     }
+
+    applyNonPersistentSettings(talon);
+
+    if (failures > 0) {
+      DriverStation.reportWarning(deviceName + ": " + failures + " configuration writes failed", false);
+    } else if (talon.configSetCustomParam(fingerprint, FINGERPRINT_PARAM, CONFIG_TIMEOUT_MS) != ErrorCode.OK) {
+      DriverStation.reportWarning(deviceName + ": saving the configuration fingerprint failed", false);
+    }
+    DeviceConfigs.record(deviceName, start, writes.size(), failures, true);
+  }
+
+  /**
+   * Overrides the feed-forward gain derived from max RPM, for example with 0
+   * when the feedforward is sent as an arbitrary demand instead
+   * 
+   * @param kF Feed-forward gain
+   * @return This config, for chaining
+   */
+  public TalonPIDConfig withkF(double kF) {
+    m_kFOverride = kF;
+    return this;
+  }
+
+  /**
+   * Sets the neutral mode, by default the Talon keeps the mode from its
+   * B/C CAL button
+   * 
+   * @param neutralMode Neutral mode
+   * @return This config, for chaining
+   */
+  public TalonPIDConfig withNeutralMode(NeutralMode neutralMode) {
+    m_neutralMode = neutralMode;
+    return this;
+  }
+
+  /**
+   * Sets whether voltage compensation is enabled when the Talon is
+   * configured, on by default. Turn it off for motors that are run open loop
+   * relative to the battery voltage and only enable it for closed loop.
+   * 
+   * @param voltageCompensation Enable voltage compensation
+   * @return This config, for chaining
+   */
+  public TalonPIDConfig withVoltageCompensation(boolean voltageCompensation) {
+    m_voltageCompensation = voltageCompensation;
+    return this;
+  }
+
+  /**
+   * Sets a stator current limit, part of the persistent config, Talon FX only
+   * 
+   * @param currentLimit Stator current limit
+   * @return This config, for chaining
+   */
+  public TalonPIDConfig withStatorCurrentLimit(StatorCurrentLimitConfiguration currentLimit) {
+    m_statorCurrentLimit = currentLimit;
+    return this;
+  }
+
+  /**
+   * Sets how often the Talon sends a status frame
+   * <p>
+   * Frames that aren't set keep their factory period.
+   * 
+   * @param frame    Status frame
+   * @param periodMs Frame period in milliseconds
+   * @return This config, for chaining
+   */
+  public TalonPIDConfig withStatusFramePeriod(StatusFrameEnhanced frame, int periodMs) {
+    m_statusFramePeriods.put(frame, periodMs);
+    return this;
+  }
+
+  /**
+   * Applies the status frame periods to a Talon and records them for the
+   * CAN bus load estimate
+   * <p>
+   * Called by {@link TalonPIDConfig#initializeTalonPID(BaseTalon, FeedbackDevice, boolean, boolean)}
+   * 
+   * @param talon Talon motor controller to apply settings to
+   */
+  public void initializeStatusFrames(BaseTalon talon) {
+    for (Map.Entry<StatusFrameEnhanced, Integer> entry : m_statusFramePeriods.entrySet()) {
+      talon.setStatusFramePeriod(entry.getKey(), entry.getValue());
+    }
+
+    String deviceName = "Talon " + talon.getDeviceID();
+    CANBusLoad.setFramePeriods(deviceName, DEFAULT_STATUS_FRAME_PERIODS);
+    CANBusLoad.setFramePeriods(deviceName, m_statusFramePeriods);
   }
 
   /**
@@ -193,6 +351,38 @@ public class TalonPIDConfig {
     initializeTalonPID(talon, feedbackDevice, false, false);
   }
 
+  /**
+   * Applies the settings a Talon loses when it power cycles, needed whether
+   * or not the persistent config was rewritten
+   * 
+   * @param talon Talon motor controller to apply settings to
+   */
+  private void applyNonPersistentSettings(BaseTalon talon) {
+    talon.setSensorPhase(m_sensorPhase);
+    talon.setInverted(m_invertMotor);
+    talon.setNeutralMode(m_neutralMode);
+
+    // Voltage compensation is relied on by feedforwards sent in volts over MAX_VOLTAGE
+    talon.enableVoltageCompensation(m_voltageCompensation);
+    talon.overrideLimitSwitchesEnable(true);
+    talon.overrideSoftLimitsEnable(true);
+
+    initializeStatusFrames(talon);
+  }
+
+  private int getFingerprint(FeedbackDevice feedbackDevice, boolean forwardLimitSwitch, boolean reverseLimitSwitch) {
+    int currentLimit = m_statorCurrentLimit == null ? 0 : Objects.hash(m_statorCurrentLimit.enable ? 1 : 0,
+        m_statorCurrentLimit.currentLimit, m_statorCurrentLimit.triggerThresholdCurrent,
+        m_statorCurrentLimit.triggerThresholdTime);
+    return Objects.hash(m_motionMagic ? 1 : 0, m_enableSoftLimits ? 1 : 0, m_ticksPerRotation, m_maxRPM, m_kP, m_kI,
+        m_kD, m_kFOverride, m_tolerance, m_lowerLimit, m_upperLimit, m_velocityRPM, m_accelerationRPMPerSec,
+        m_motionSmoothing, feedbackDevice.value, forwardLimitSwitch ? 1 : 0, reverseLimitSwitch ? 1 : 0, currentLimit);
+  }
+
+  private double calculatekF() {
+    return Double.isNaN(m_kFOverride) ? 1023 / rpmToTicksPer100ms(m_maxRPM) : m_kFOverride;
+  }
+
   /**
    * Convert RPM to ticks per 100ms
    * 
@@ -296,4 +486,11 @@ public class TalonPIDConfig {
   public int getMotionSmoothing() {
     return m_motionSmoothing;
   }
+
+  /**
+   * @return Status frame periods in milliseconds set on this config
+   */
+  public Map<StatusFrameEnhanced, Integer> getStatusFramePeriods() {
+    return m_statusFramePeriods;
+  }
 }
@@ -0,0 +1,101 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants;
+import frc.robot.subsystems.DriveSubsystem;
+
+/**
+ * Turns the robot in place to the closest of a set of field headings.
+ * <p>
+ * The rotation follows a trapezoidal profile at the snap velocity and
+ * acceleration limits. The profile's velocity is sent as the feedforward,
+ * since the drivetrain takes angular rate commands, and a PID only corrects
+ * the tracking error. The command ends once the profile is done and the robot
+ * is within tolerance, and logs the time it took.
+ */
+public class SnapToHeading extends CommandBase {
+  private final DriveSubsystem m_driveSubsystem;
+  private final double[] m_headingsRadians;
+  private final ProfiledPIDController m_controller = new ProfiledPIDController(
+      Constants.SNAP_KP, 0.0, Constants.SNAP_KD,
+      new TrapezoidProfile.Constraints(Constants.SNAP_MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND,
+          Constants.SNAP_MAX_ANGULAR_ACCELERATION_RADIANS_PER_SECOND_SQUARED));
+
+  private double m_startSeconds;
+
+  /**
+   * Create a snap to heading command
+   *
+   * @param driveSubsystem  Drivetrain
+   * @param headingsDegrees Field headings to choose from
+   */
+  public SnapToHeading(DriveSubsystem driveSubsystem, double... headingsDegrees) {
+    m_driveSubsystem = driveSubsystem;
+    m_headingsRadians = new double[headingsDegrees.length];
+    for (int i = 0; i < headingsDegrees.length; i++) {
+      m_headingsRadians[i] = MathUtil.angleModulus(Math.toRadians(headingsDegrees[i]));
+    }
+    m_controller.enableContinuousInput(-Math.PI, Math.PI);
+    m_controller.setTolerance(Math.toRadians(Constants.SNAP_TOLERANCE_DEGREES),
+        Constants.SNAP_VELOCITY_TOLERANCE_RADIANS_PER_SECOND);
+    addRequirements(m_driveSubsystem);
+  }
+
+  @Override
+  public void initialize() {
+    double heading = m_driveSubsystem.getPose().getRotation().getRadians();
+    double goal = closestHeading(heading);
+
+    // Start the profile from the current heading and turn rate so a moving robot isn't jerked
+    m_controller.reset(heading, Math.toRadians(m_driveSubsystem.getYawRate()));
+    m_controller.setGoal(goal);
+    m_startSeconds = Timer.getFPGATimestamp();
+    Logger.getInstance().recordOutput("SnapToHeading/GoalDegrees", Math.toDegrees(goal));
+  }
+
+  @Override
+  public void execute() {
+    double heading = m_driveSubsystem.getPose().getRotation().getRadians();
+    double feedback = m_controller.calculate(heading);
+    double rate = m_controller.getSetpoint().velocity + feedback;
+    m_driveSubsystem.drive(0.0, 0.0, MathUtil.clamp(rate,
+        -Constants.MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND, Constants.MAX_ANGULAR_VELOCITY_RADIANS_PER_SECOND), true);
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    m_driveSubsystem.stop();
+    if (!interrupted) {
+      Logger.getInstance().recordOutput("SnapToHeading/TimeToAlignSeconds", Timer.getFPGATimestamp() - m_startSeconds);
+    }
+    Logger.getInstance().recordOutput("SnapToHeading/Interrupted", interrupted);
+  }
+
+  @Override
+  public boolean isFinished() {
+    return m_controller.atGoal();
+  }
+
+  private double closestHeading(double heading) {
+    double closest = heading;
+    double closestError = Double.POSITIVE_INFINITY;
+    for (double candidate : m_headingsRadians) {
+      double error = Math.abs(MathUtil.angleModulus(candidate - heading));
+      if (error < closestError) {
+        closestError = error;
+        closest = candidate;
+      }
+    }
+    return closest;
+  }
+}
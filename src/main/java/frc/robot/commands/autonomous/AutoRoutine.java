@@ -0,0 +1,30 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.autonomous;
+
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj2.command.Command;
+
+/** An autonomous routine whose slow setup can be done ahead of time. */
+@FunctionalInterface
+public interface AutoRoutine {
+  /**
+   * Does the slow setup, like loading and transforming paths. Called from a
+   * background thread while disabled, so it must not touch the command
+   * scheduler or hardware.
+   *
+   * @param alliance Alliance to prepare for
+   */
+  default void prepare(Alliance alliance) {
+  }
+
+  /**
+   * Builds the command, called on the main robot thread after
+   * {@link #prepare(Alliance)}
+   *
+   * @return The command to run in autonomous
+   */
+  Command build();
+}
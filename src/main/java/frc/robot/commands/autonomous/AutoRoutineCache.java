@@ -0,0 +1,206 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.autonomous;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj2.command.Command;
+
+/**
+ * Auto chooser that gets the selected routine ready while the robot is
+ * disabled.
+ * <p>
+ * Every option is prepared on a background thread, starting with the
+ * selected one, and prepared again when the alliance changes. Once preparing
+ * is done the selected routine's command is built on the main thread, and
+ * rebuilt when the selection changes, so autonomousInit only has to hand it
+ * over.
+ */
+public class AutoRoutineCache {
+  private final SendableChooser<AutoRoutine> m_chooser = new SendableChooser<>();
+  private final List<AutoRoutine> m_routines = new ArrayList<>();
+  private final Map<String, AutoRoutine> m_routinesByName = new HashMap<>();
+  // Selected without the dashboard, overrides the chooser
+  private AutoRoutine m_selectedOverride = null;
+  private final ExecutorService m_executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "AutoPreload");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    return thread;
+  });
+
+  // Preparing job and the alliance it's for
+  private Future<?> m_prepareJob = null;
+  private Alliance m_preparedAlliance = null;
+  private boolean m_prepareFailed = false;
+
+  // Command built for the selected routine
+  private Command m_readyCommand = null;
+  private AutoRoutine m_readyRoutine = null;
+  private Alliance m_readyAlliance = null;
+
+  /**
+   * Adds the default option
+   *
+   * @param name    Name shown on the dashboard
+   * @param routine Routine to run
+   */
+  public void setDefaultOption(String name, AutoRoutine routine) {
+    m_chooser.setDefaultOption(name, routine);
+    m_routines.add(routine);
+    m_routinesByName.put(name, routine);
+  }
+
+  /**
+   * Adds an option
+   *
+   * @param name    Name shown on the dashboard
+   * @param routine Routine to run
+   */
+  public void addOption(String name, AutoRoutine routine) {
+    m_chooser.addOption(name, routine);
+    m_routines.add(routine);
+    m_routinesByName.put(name, routine);
+  }
+
+  /**
+   * @return Chooser to put on the dashboard
+   */
+  public SendableChooser<AutoRoutine> getChooser() {
+    return m_chooser;
+  }
+
+  /**
+   * Selects an option by name, ignoring the dashboard from then on
+   *
+   * @param name Name of the option
+   * @throws IllegalArgumentException If there's no option with that name
+   */
+  public void selectOption(String name) {
+    AutoRoutine routine = m_routinesByName.get(name);
+    if (routine == null) {
+      throw new IllegalArgumentException("No auto named " + name + ", options are " + m_routinesByName.keySet());
+    }
+    m_selectedOverride = routine;
+  }
+
+  /** Keeps the selected routine ready, call every loop while disabled. */
+  public void disabledPeriodic() {
+    Alliance alliance = DriverStation.getAlliance();
+    AutoRoutine selected = getSelected();
+
+    if (alliance != m_preparedAlliance) {
+      startPreparing(alliance, selected);
+    }
+    if (!finishPreparing(false) || selected == null) {
+      return;
+    }
+
+    if (selected != m_readyRoutine || alliance != m_readyAlliance) {
+      m_readyCommand = selected.build();
+      m_readyRoutine = selected;
+      m_readyAlliance = alliance;
+    }
+  }
+
+  /**
+   * Hands over the selected routine's command, building it now if it wasn't
+   * ready. Logs how long it took.
+   *
+   * @return The command to run in autonomous, or null if nothing is selected
+   */
+  public Command getAutonomousCommand() {
+    long start = System.nanoTime();
+    Alliance alliance = DriverStation.getAlliance();
+    AutoRoutine selected = getSelected();
+
+    boolean preloaded = selected != null && selected == m_readyRoutine && alliance == m_readyAlliance;
+    Command command = null;
+    if (preloaded) {
+      command = m_readyCommand;
+    } else if (selected != null) {
+      // Don't prepare a routine at the same time as the background thread
+      if (!finishPreparing(true) || alliance != m_preparedAlliance) {
+        selected.prepare(alliance);
+      }
+      command = selected.build();
+    }
+
+    // A command is only handed out once, the next disabled period builds a new one
+    m_readyCommand = null;
+    m_readyRoutine = null;
+    m_readyAlliance = null;
+
+    Logger.getInstance().recordOutput("Auto/StartLatencyMs", (System.nanoTime() - start) / 1e6);
+    Logger.getInstance().recordOutput("Auto/Preloaded", preloaded);
+    return command;
+  }
+
+  private AutoRoutine getSelected() {
+    return m_selectedOverride != null ? m_selectedOverride : m_chooser.getSelected();
+  }
+
+  // Jobs run one at a time in order, so a new job never prepares alongside an old one
+  private void startPreparing(Alliance alliance, AutoRoutine selected) {
+    List<AutoRoutine> order = new ArrayList<>(m_routines.size());
+    if (selected != null) {
+      order.add(selected);
+    }
+    for (AutoRoutine routine : m_routines) {
+      if (routine != selected) {
+        order.add(routine);
+      }
+    }
+
+    m_preparedAlliance = alliance;
+    m_prepareFailed = false;
+    m_readyCommand = null;
+    m_readyRoutine = null;
+    m_readyAlliance = null;
+    m_prepareJob = m_executor.submit(() -> {
+      for (AutoRoutine routine : order) {
+        routine.prepare(alliance);
+      }
+    });
+  }
+
+  /**
+   * @param wait Whether to wait for the job
+   * @return Whether preparing finished successfully
+   */
+  private boolean finishPreparing(boolean wait) {
+    if (m_prepareJob == null) {
+      return false;
+    }
+    if (!wait && !m_prepareJob.isDone()) {
+      return false;
+    }
+
+    try {
+      m_prepareJob.get();
+    } catch (ExecutionException e) {
+      if (!m_prepareFailed) {
+        DriverStation.reportError("Failed to preload autos: " + e.getCause(), e.getCause().getStackTrace());
+      }
+      m_prepareFailed = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return !m_prepareFailed;
+  }
+}
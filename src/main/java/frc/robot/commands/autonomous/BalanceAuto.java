@@ -1,4 +1,3 @@
-
 // Copyright (c) FIRST and other WPILib contributors.
 // Open Source Software; you can modify and/or share it under the terms of
 // the WPILib BSD license file in the root directory of this project.
@@ -7,17 +6,18 @@ package frc.robot.commands.autonomous;
 
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import frc.robot.subsystems.DriveSubsystem;
-// base OnChargeX -2, OnPitchX -1
+
 public class BalanceAuto extends SequentialCommandGroup {
-  /** Auto that drives forward or backwards until it sees gyro pitch change up and down following balancing on charge station
+  /** Auto that drives forward or backwards onto the charge station, then balances on it
    * WILL RUN FOREVER IF NOT CALLED WITH TIMEOUT
+   *
+   * @param driveSubsystem Drivetrain
+   * @param onChargeX      Robot relative speed used to drive onto the charge station
   */
-
-  public BalanceAuto(DriveSubsystem driveSubsystem, double onChargeX, double onPitchX, double driveSpeed) {
+  public BalanceAuto(DriveSubsystem driveSubsystem, double onChargeX) {
     addCommands(
         new DriveUntilCommand(driveSubsystem, onChargeX, 0, driveSubsystem::onChargeStation),
-        new DriveUntilCommand(driveSubsystem, onPitchX, 0, driveSubsystem::onPitchDown),
-        new DriveUntilCommand(driveSubsystem, driveSpeed, 0.0, () -> false).withTimeout(0.125)
+        new BalanceCommand(driveSubsystem)
     );
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands.autonomous;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants;
+import frc.robot.subsystems.DriveSubsystem;
+
+/**
+ * Balances the robot on the charge station.
+ * <p>
+ * The drive speed is proportional to the pitch predicted a short time ahead
+ * from the filtered pitch rate, so once the station starts to tip the
+ * prediction crosses level and the robot brakes before the station does. The
+ * speed follows a trapezoidal profile, accelerating gently and braking hard.
+ * Time to level, settling time, overshoot and level crossings are logged.
+ * Runs until interrupted so the robot keeps the station level, call with a
+ * timeout in autos.
+ */
+public class BalanceCommand extends CommandBase {
+  private final DriveSubsystem m_driveSubsystem;
+
+  private double m_speed;
+  private double m_startSeconds;
+  private double m_levelSinceSeconds;
+  private double m_initialPitchSign;
+  private double m_overshootDegrees;
+  private int m_levelCrossings;
+  private boolean m_reachedLevel;
+  private boolean m_level;
+  private boolean m_settled;
+
+  /**
+   * Create a charge station balance command
+   *
+   * @param driveSubsystem Drivetrain
+   */
+  public BalanceCommand(DriveSubsystem driveSubsystem) {
+    m_driveSubsystem = driveSubsystem;
+    addRequirements(m_driveSubsystem);
+  }
+
+  @Override
+  public void initialize() {
+    double pitch = m_driveSubsystem.getEstimatedPitch();
+    m_speed = 0.0;
+    m_startSeconds = Timer.getFPGATimestamp();
+    m_levelSinceSeconds = m_startSeconds;
+    m_initialPitchSign = Math.signum(pitch);
+    m_overshootDegrees = 0.0;
+    m_levelCrossings = 0;
+    m_level = Math.abs(pitch) < Constants.BALANCE_LEVEL_TOLERANCE_DEGREES;
+    m_reachedLevel = m_level;
+    m_settled = false;
+    if (m_level) {
+      Logger.getInstance().recordOutput("Balance/TimeToLevelSeconds", 0.0);
+    }
+  }
+
+  @Override
+  public void execute() {
+    double pitch = m_driveSubsystem.getEstimatedPitch();
+    double predictedPitch = pitch + m_driveSubsystem.getEstimatedPitchRate() * Constants.BALANCE_LOOKAHEAD_SECONDS;
+
+    double target = 0.0;
+    if (Math.abs(predictedPitch) > Constants.BALANCE_LEVEL_TOLERANCE_DEGREES) {
+      target = MathUtil.clamp(Constants.BALANCE_KP * predictedPitch,
+          -Constants.BALANCE_MAX_SPEED_METERS_PER_SECOND, Constants.BALANCE_MAX_SPEED_METERS_PER_SECOND);
+    }
+
+    // Slowing down or reversing is braking, which is allowed to happen much faster
+    boolean braking = Math.abs(target) < Math.abs(m_speed) || target * m_speed < 0.0;
+    double maxStep = (braking
+        ? Constants.BALANCE_MAX_DECELERATION_METERS_PER_SECOND_SQUARED
+        : Constants.BALANCE_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED) * Constants.LOOP_PERIOD_SECONDS;
+    m_speed += MathUtil.clamp(target - m_speed, -maxStep, maxStep);
+
+    if (m_speed == 0.0) {
+      m_driveSubsystem.stop();
+    } else {
+      m_driveSubsystem.drive(m_speed, 0.0, 0.0, false);
+    }
+
+    updateMetrics(pitch);
+    Logger.getInstance().recordOutput("Balance/PredictedPitchDegrees", predictedPitch);
+    Logger.getInstance().recordOutput("Balance/SpeedMetersPerSecond", m_speed);
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    m_driveSubsystem.stop();
+    Logger.getInstance().recordOutput("Balance/EndedLevel", m_level);
+  }
+
+  private void updateMetrics(double pitch) {
+    double now = Timer.getFPGATimestamp();
+    boolean level = Math.abs(pitch) < Constants.BALANCE_LEVEL_TOLERANCE_DEGREES;
+    if (level && !m_level) {
+      m_levelSinceSeconds = now;
+      m_levelCrossings++;
+      if (!m_reachedLevel) {
+        m_reachedLevel = true;
+        Logger.getInstance().recordOutput("Balance/TimeToLevelSeconds", now - m_startSeconds);
+      }
+    } else if (!level && m_level) {
+      m_settled = false;
+    }
+    m_level = level;
+
+    // Tilt past level the other way after first reaching it
+    if (m_reachedLevel && pitch * m_initialPitchSign < 0.0) {
+      m_overshootDegrees = Math.max(m_overshootDegrees, Math.abs(pitch));
+    }
+
+    if (level && !m_settled && now - m_levelSinceSeconds >= Constants.BALANCE_SETTLE_SECONDS) {
+      m_settled = true;
+      Logger.getInstance().recordOutput("Balance/SettlingTimeSeconds", m_levelSinceSeconds - m_startSeconds);
+    }
+
+    Logger.getInstance().recordOutput("Balance/Level", level);
+    Logger.getInstance().recordOutput("Balance/Settled", m_settled);
+    Logger.getInstance().recordOutput("Balance/OvershootDegrees", m_overshootDegrees);
+    Logger.getInstance().recordOutput("Balance/LevelCrossings", m_levelCrossings);
+  }
+}
@@ -7,29 +7,32 @@ package frc.robot.commands.autonomous;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.pathplanner.lib.PathPlanner;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.commands.FollowPathWithEvents;
 import com.pathplanner.lib.commands.PPSwerveControllerCommand;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.utils.TrajectoryStore;
 
 /**
  * Base of a path planner auto with only driving
  */
-public class BasePathAuto {
+public class BasePathAuto implements AutoRoutine {
 
   DriveSubsystem m_driveSubsystem;
-  PathPlannerTrajectory m_pathPlannerTrajectory;
   PathPlannerTrajectory m_transformedTrajectory;
   PPSwerveControllerCommand m_swerveControllerCommand;
   Map<String, Command> m_eventMap = new HashMap<>();
   String autoPathName = "";
+  double m_maxSpeedMetersPerSec;
+  double m_maxAccelerationMetersPerSecSquared;
 
   /**
    * Creates a new PathPlanner trajectory for swerve modules to follow in
-   * autonomous
+   * autonomous. The path is loaded by {@link #prepare(Alliance)}, or when the
+   * command is first needed.
    * 
    * @param driveSubsystem
    * @param autoPathName
@@ -40,12 +43,19 @@ public class BasePathAuto {
       double maxAccelerationMetersPerSecSquared) {
     this.m_driveSubsystem = driveSubsystem;
     this.autoPathName = autoPathName;
+    this.m_maxSpeedMetersPerSec = maxSpeedMetersPerSec;
+    this.m_maxAccelerationMetersPerSecSquared = maxAccelerationMetersPerSecSquared;
+  }
 
-    m_pathPlannerTrajectory = PathPlanner.loadPath(autoPathName, maxSpeedMetersPerSec,
-        maxAccelerationMetersPerSecSquared);
-    m_transformedTrajectory = PathPlannerTrajectory.transformTrajectoryForAlliance(m_pathPlannerTrajectory,
-        DriverStation.getAlliance());
+  @Override
+  public void prepare(Alliance alliance) {
+    m_transformedTrajectory = TrajectoryStore.get(autoPathName, m_maxSpeedMetersPerSec,
+        m_maxAccelerationMetersPerSecSquared, alliance);
+  }
 
+  @Override
+  public Command build() {
+    return getCommandAndStop();
   }
 
   protected void setEventMap(Map<String, Command> eventMap){
@@ -57,6 +67,9 @@ public class BasePathAuto {
    * @return returns a path with events for the robot to follow
    */
   public Command getCommandAndStop() {
+    if (m_transformedTrajectory == null) {
+      prepare(DriverStation.getAlliance());
+    }
     return new FollowPathWithEvents(m_driveSubsystem.followTrajectoryCommand(m_transformedTrajectory, true),
         m_transformedTrajectory.getMarkers(),
         m_eventMap);
@@ -0,0 +1,69 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants;
+
+/**
+ * Ground truth pose of the simulated drivetrain.
+ * <p>
+ * Integrates the chassis motion implied by the simulated modules, separately
+ * from the robot's pose estimator, so simulated sensors like the cameras see
+ * where the robot really is rather than where the estimator thinks it is.
+ * Must be updated once per loop after the modules.
+ */
+public class DriveSim {
+  private final SwerveModuleIOSim[] m_modules;
+  private final SwerveModuleState[] m_states;
+
+  private Pose2d m_pose = new Pose2d();
+
+  /**
+   * Create the simulated drivetrain pose
+   *
+   * @param modules Simulated modules in FL, FR, BL, BR order
+   */
+  public DriveSim(SwerveModuleIOSim... modules) {
+    m_modules = modules;
+    m_states = new SwerveModuleState[modules.length];
+    for (int i = 0; i < modules.length; i++) {
+      m_states[i] = new SwerveModuleState();
+    }
+  }
+
+  /** Advances the true pose by one loop of module motion. */
+  public void update() {
+    for (int i = 0; i < m_modules.length; i++) {
+      m_states[i].speedMetersPerSecond = m_modules[i].getDriveVelocityMetersPerSec();
+      m_states[i].angle = new Rotation2d(m_modules[i].getTurnAngleRad());
+    }
+    ChassisSpeeds speeds = Constants.DRIVE_KINEMATICS.toChassisSpeeds(m_states);
+    m_pose = m_pose.exp(new Twist2d(
+        speeds.vxMetersPerSecond * Constants.LOOP_PERIOD_SECONDS,
+        speeds.vyMetersPerSecond * Constants.LOOP_PERIOD_SECONDS,
+        speeds.omegaRadiansPerSecond * Constants.LOOP_PERIOD_SECONDS));
+  }
+
+  /**
+   * Places the simulated robot somewhere on the field
+   *
+   * @param pose New true pose
+   */
+  public void resetPose(Pose2d pose) {
+    m_pose = pose;
+  }
+
+  /**
+   * @return True pose of the simulated robot
+   */
+  public Pose2d getPose() {
+    return m_pose;
+  }
+}
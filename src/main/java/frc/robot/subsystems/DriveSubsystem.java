@@ -4,84 +4,236 @@
 
 package frc.robot.subsystems;
 
+import java.util.Optional;
+import java.util.function.Consumer;
+
 import org.littletonrobotics.junction.Logger;
 
-import com.ctre.phoenix.sensors.PigeonIMU;
 import com.pathplanner.lib.PathPlannerTrajectory;
 
+import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import com.pathplanner.lib.commands.PPSwerveControllerCommand;
 import frc.robot.Constants;
+import frc.robot.utils.Alert;
+import frc.robot.utils.Alert.AlertType;
+import frc.robot.utils.Diagnostics;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.PitchEstimator;
+import frc.robot.utils.PoseHistory;
+import frc.robot.utils.SwerveSetpointGenerator;
+import frc.robot.utils.Telemetry;
+import frc.robot.utils.Telemetry.Priority;
 
 public class DriveSubsystem extends SubsystemBase {
 
-  // Pigeon gyro
-  private final PigeonIMU m_pigeon = new PigeonIMU(Constants.PIGEON_ID);
+  // Gyro
+  private final GyroIO m_gyroIO;
+  private final GyroIOInputsAutoLogged m_gyroInputs = new GyroIOInputsAutoLogged();
 
   // Swerve Modules
-  private final SwerveModule m_frontLeftModule = new SwerveModule(
-      Constants.FRONT_LEFT_DRIVE_MOTOR,
-      Constants.FRONT_LEFT_STEER_MOTOR,
-      Constants.FRONT_LEFT_STEER_ENCODER,
-      Constants.FRONT_LEFT_STEER_OFFSET,
-      Constants.TURN_MOTOR_CONFIG,
-      Constants.FRONT_LEFT_DRIVE_MOTOR_INVERTED,
-      Constants.FRONT_LEFT_TURN_MOTOR_INVERTED);
-  private final SwerveModule m_frontRightModule = new SwerveModule(
-      Constants.FRONT_RIGHT_DRIVE_MOTOR,
-      Constants.FRONT_RIGHT_STEER_MOTOR,
-      Constants.FRONT_RIGHT_STEER_ENCODER,
-      Constants.FRONT_RIGHT_STEER_OFFSET,
-      Constants.TURN_MOTOR_CONFIG,
-      Constants.FRONT_RIGHT_DRIVE_MOTOR_INVERTED,
-      Constants.FRONT_RIGHT_TURN_MOTOR_INVERTED);
-  private final SwerveModule m_backLeftModule = new SwerveModule(
-      Constants.BACK_LEFT_DRIVE_MOTOR,
-      Constants.BACK_LEFT_STEER_MOTOR,
-      Constants.BACK_LEFT_STEER_ENCODER,
-      Constants.BACK_LEFT_STEER_OFFSET,
-      Constants.TURN_MOTOR_CONFIG,
-      Constants.BACK_LEFT_DRIVE_MOTOR_INVERTED,
-      Constants.BACK_LEFT_TURN_MOTOR_INVERTED);
-  private final SwerveModule m_backRightModule = new SwerveModule(
-      Constants.BACK_RIGHT_DRIVE_MOTOR,
-      Constants.BACK_RIGHT_STEER_MOTOR,
-      Constants.BACK_RIGHT_STEER_ENCODER,
-      Constants.BACK_RIGHT_STEER_OFFSET,
-      Constants.TURN_MOTOR_CONFIG,
-      Constants.BACK_RIGHT_DRIVE_MOTOR_INVERTED,
-      Constants.BACK_RIGHT_TURN_MOTOR_INVERTED);
-
-  // Odometry
-  private final SwerveDriveOdometry m_odometry;
+  private final SwerveModule m_frontLeftModule;
+  private final SwerveModule m_frontRightModule;
+  private final SwerveModule m_backLeftModule;
+  private final SwerveModule m_backRightModule;
+
+  private final SwerveModule[] m_modules;
+
+  // Setpoint buffers, reused every loop so drive() doesn't allocate
+  private final double[] m_moduleSpeeds = new double[Constants.MODULE_TRANSLATIONS.length];
+  private final double[] m_moduleAngles = new double[Constants.MODULE_TRANSLATIONS.length];
+
+  // Gyro snapshot, sampled once per loop by updateSensors()
+  private double m_yawDegrees = 0.0;
+  private Rotation2d m_yaw = new Rotation2d();
+  // Set while yaw is integrated from the wheels because the gyro isn't answering, for driving and odometry
+  private boolean m_yawFallback = false;
+  private final Alert m_yawFallbackAlert = new Alert("Gyro disconnected, yaw integrated from the wheels",
+      AlertType.WARNING);
+
+  private final SwerveModuleState[] m_measuredStates = new SwerveModuleState[Constants.MODULE_TRANSLATIONS.length];
+
+  // Odometry, fused with vision
+  private final SwerveDrivePoseEstimator m_poseEstimator;
+  private final SwerveModulePosition[] m_modulePositions = new SwerveModulePosition[Constants.MODULE_TRANSLATIONS.length];
+  private final OdometryThread m_odometryThread;
+  private final OdometryInputsAutoLogged m_odometryInputs = new OdometryInputsAutoLogged();
+  // Positions and yaw of the last sample integrated into odometry
+  private final SwerveModulePosition[] m_odometryPositions = new SwerveModulePosition[Constants.MODULE_TRANSLATIONS.length];
+  private Rotation2d m_odometryYaw = new Rotation2d();
+  // Raw values behind the angles above, Rotation2d is immutable so a new one is only made when these change
+  private final double[] m_odometryTurnRadians = new double[Constants.MODULE_TRANSLATIONS.length];
+  private double m_odometryYawDegrees = 0.0;
+  // Immutable pose published once per loop, safe to read from any thread
+  private volatile Pose2d m_pose = new Pose2d();
+  private final PoseHistory m_poseHistory;
+  // Told where odometry is reset to, so simulation can move the true robot there
+  private Consumer<Pose2d> m_poseResetListener = pose -> {};
+  // Set when hardware the drivetrain needs is missing, every drive request then stops instead
+  private boolean m_disabled = false;
+  // Pitch estimated from the odometry samples, for balancing
+  private final PitchEstimator m_pitchEstimator = new PitchEstimator(
+      Constants.PITCH_RATE_FILTER_TIME_CONSTANT_SECONDS, Constants.PITCH_FILTER_TIME_CONSTANT_SECONDS);
+
+  private long m_logCycle = 0;
+
+  private final int m_inputsProfilerId = LoopProfiler.registerPeriodic("DriveSubsystem/UpdateInputs");
+  private final int m_odometryProfilerId = LoopProfiler.registerPeriodic("DriveSubsystem/Odometry");
+  private final int m_telemetryProfilerId = LoopProfiler.registerPeriodic("DriveSubsystem/Telemetry");
+  private final int m_setpointProfilerId = LoopProfiler.register("DriveSubsystem/SetpointGenerator");
+
+  private final SwerveSetpointGenerator m_setpointGenerator = new SwerveSetpointGenerator(
+      Constants.MODULE_TRANSLATIONS,
+      Constants.MAX_VELOCITY_METERS_PER_SECOND,
+      Constants.MAX_MODULE_ACCELERATION_METERS_PER_SECOND_SQUARED,
+      Constants.MAX_STEER_VELOCITY_RADIANS_PER_SECOND,
+      Constants.LOOP_PERIOD_SECONDS);
 
   private final PIDController xController = new PIDController(Constants.AUTO_X_KP, Constants.AUTO_X_KI, Constants.AUTO_X_KD);
   private final  PIDController yController = new PIDController(Constants.AUTO_Y_KP, Constants.AUTO_Y_KI, Constants.AUTO_Y_KD);
   private final  PIDController thetaController = new PIDController(Constants.AUTO_THETA_KP, Constants.AUTO_THETA_KI,
         Constants.AUTO_THETA_KD);
 
-  public DriveSubsystem() {
-    m_pigeon.setYaw(0.0);
-    m_odometry = new SwerveDriveOdometry(Constants.DRIVE_KINEMATICS,
-      Rotation2d.fromDegrees(m_pigeon.getYaw()),
-      getModulePositions());
+  /**
+   * Creates the drivetrain on top of its hardware IO.
+   *
+   * @param gyroIO       Gyro IO
+   * @param frontLeftIO  Front left module IO
+   * @param frontRightIO Front right module IO
+   * @param backLeftIO   Back left module IO
+   * @param backRightIO  Back right module IO
+   */
+  public DriveSubsystem(GyroIO gyroIO, SwerveModuleIO frontLeftIO, SwerveModuleIO frontRightIO,
+      SwerveModuleIO backLeftIO, SwerveModuleIO backRightIO) {
+    m_gyroIO = gyroIO;
+    m_frontLeftModule = new SwerveModule(frontLeftIO, "FrontLeft", Constants.FRONT_LEFT_STEER_OFFSET);
+    m_frontRightModule = new SwerveModule(frontRightIO, "FrontRight", Constants.FRONT_RIGHT_STEER_OFFSET);
+    m_backLeftModule = new SwerveModule(backLeftIO, "BackLeft", Constants.BACK_LEFT_STEER_OFFSET);
+    m_backRightModule = new SwerveModule(backRightIO, "BackRight", Constants.BACK_RIGHT_STEER_OFFSET);
+    m_modules = new SwerveModule[] {
+        m_frontLeftModule, m_frontRightModule, m_backLeftModule, m_backRightModule
+    };
+
+    for (int i = 0; i < m_modules.length; i++) {
+      m_moduleAngles[i] = m_modules[i].getTurnPositionRadians();
+      m_modulePositions[i] = new SwerveModulePosition();
+      m_measuredStates[i] = new SwerveModuleState();
+    }
+    m_setpointGenerator.reset(m_moduleSpeeds, m_moduleAngles);
+
+    m_gyroIO.setYaw(0.0);
+    m_gyroIO.updateInputs(m_gyroInputs);
+    updateYaw();
+    getModulePositions();
+    for (int i = 0; i < m_modules.length; i++) {
+      m_odometryPositions[i] = new SwerveModulePosition(m_modulePositions[i].distanceMeters, m_modulePositions[i].angle);
+      m_odometryTurnRadians[i] = m_modulePositions[i].angle.getRadians();
+    }
+    m_odometryYaw = m_yaw;
+    m_odometryYawDegrees = m_yawDegrees;
+    m_poseEstimator = new SwerveDrivePoseEstimator(Constants.DRIVE_KINEMATICS,
+      m_odometryYaw,
+      m_odometryPositions,
+      new Pose2d());
+
+    m_odometryThread = new OdometryThread(m_modules.length, Constants.ODOMETRY_FREQUENCY_HZ,
+        (drivePositions, turnPositions, gyroDegrees) -> {
+          for (int i = 0; i < m_modules.length; i++) {
+            drivePositions[i] = m_modules[i].readDrivePositionMeters();
+            turnPositions[i] = m_modules[i].readTurnPositionRadians();
+          }
+          m_gyroIO.readSample(gyroDegrees);
+        });
+    m_poseHistory = PoseHistory.forDuration(Constants.POSE_HISTORY_SECONDS, m_odometryThread.getFrequencyHz());
+
+    // In simulation and replay the samples come from the loop snapshot or the log instead
+    if (RobotBase.isReal()) {
+      m_odometryThread.start();
+    }
+    }
+
+  /**
+   * Samples the gyro and every swerve module once through their IO and logs
+   * the inputs.
+   * <p>
+   * Everything else in the drivetrain reads from this snapshot for the rest of
+   * the loop, so each sensor is only read over CAN once per cycle and all
+   * consumers see the same values.
+   */
+  public void updateSensors() {
+    for (SwerveModule module : m_modules) {
+      module.updateInputs();
+    }
+
+    m_gyroIO.updateInputs(m_gyroInputs);
+    Logger.getInstance().processInputs("Drive/Gyro", m_gyroInputs);
+    updateYaw();
+  }
+
+  /**
+   * Updates the cached yaw from the gyro, or from kinematics when the gyro is
+   * disconnected. The fallback is logged as Drive/YawFallbackActive and raises
+   * a warning while it's active, odometry uses the same yaw meanwhile.
+   */
+  private void updateYaw() {
+    double yawDegrees;
+    boolean fallback = !m_gyroInputs.connected;
+    m_yawFallback = fallback;
+    if (fallback) {
+      // Integrate the measured chassis rotation instead, it drifts but keeps field relative driving usable
+      yawDegrees = m_yawDegrees + Math.toDegrees(getMeasuredOmega() * Constants.LOOP_PERIOD_SECONDS);
+    } else {
+      yawDegrees = m_gyroInputs.yawDegrees;
+    }
+    m_yawFallbackAlert.set(fallback);
+    Logger.getInstance().recordOutput("Drive/YawFallbackActive", fallback);
+
+    if (yawDegrees != m_yawDegrees) {
+      m_yaw = Rotation2d.fromDegrees(yawDegrees);
     }
+    m_yawDegrees = yawDegrees;
+  }
+
+  /**
+   * Least squares chassis rotation rate from the sampled module speeds and
+   * angles, the same as the kinematics' with modules centered on the robot,
+   * without allocating states.
+   *
+   * @return Measured angular rate in radians per second
+   */
+  private double getMeasuredOmega() {
+    double moment = 0.0;
+    double radiusSquared = 0.0;
+    for (int i = 0; i < m_modules.length; i++) {
+      double x = Constants.MODULE_TRANSLATIONS[i].getX();
+      double y = Constants.MODULE_TRANSLATIONS[i].getY();
+      double speed = m_modules[i].getDriveVelocityMetersPerSecond();
+      double angle = m_modules[i].getTurnPositionRadians();
+      moment += x * speed * Math.sin(angle) - y * speed * Math.cos(angle);
+      radiusSquared += x * x + y * y;
+    }
+    return moment / radiusSquared;
+  }
 
   /**
    * Method to drive the robot using joystick info.
+   * <p>
+   * Field relative conversion is done in place and the module setpoints come
+   * from the {@link SwerveSetpointGenerator}, which limits module acceleration
+   * and steering rate. Neither allocates, so the teleop hot path doesn't create
+   * garbage every loop.
    *
    * @param xSpeed        Speed of the robot in the x direction (forward).
    * @param ySpeed        Speed of the robot in the y direction (sideways).
@@ -90,111 +242,330 @@ public class DriveSubsystem extends SubsystemBase {
    *                      field.
    */
   public void drive(double xSpeed, double ySpeed, double rot, boolean fieldRelative) {
-    var swerveModuleStates = Constants.DRIVE_KINEMATICS.toSwerveModuleStates(
-        fieldRelative
-            ? ChassisSpeeds.fromFieldRelativeSpeeds(xSpeed, ySpeed, rot, Rotation2d.fromDegrees(m_pigeon.getYaw()))
-            : new ChassisSpeeds(xSpeed, ySpeed, rot));
-    SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, Constants.MAX_VELOCITY_METERS_PER_SECOND);
-    setModuleStates(swerveModuleStates);
+    if (m_disabled) {
+      stop();
+      return;
+    }
+    double vx = xSpeed;
+    double vy = ySpeed;
+    if (fieldRelative) {
+      double yaw = Math.toRadians(m_yawDegrees);
+      double cos = Math.cos(yaw);
+      double sin = Math.sin(yaw);
+      vx = xSpeed * cos + ySpeed * sin;
+      vy = -xSpeed * sin + ySpeed * cos;
+    }
+
+    long start = LoopProfiler.start();
+    m_setpointGenerator.generate(vx, vy, rot, m_moduleSpeeds, m_moduleAngles);
+    LoopProfiler.stop(m_setpointProfilerId, start);
+
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].setDesiredState(m_moduleSpeeds[i], m_moduleAngles[i]);
+    }
   }
 
   public void setModuleStates(SwerveModuleState[] states) {
-    m_frontLeftModule.setDesiredState(states[0]);
-    m_frontRightModule.setDesiredState(states[1]);
-    m_backLeftModule.setDesiredState(states[2]);
-    m_backRightModule.setDesiredState(states[3]);
-
-    updateOdometry();
+    if (m_disabled) {
+      stop();
+      return;
+    }
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].setDesiredState(states[i]);
+      m_moduleSpeeds[i] = states[i].speedMetersPerSecond;
+      m_moduleAngles[i] = states[i].angle.getRadians();
+    }
+    m_setpointGenerator.reset(m_moduleSpeeds, m_moduleAngles);
   }
 
   public Rotation2d getRotation2d() {
-    return Rotation2d.fromDegrees(m_pigeon.getFusedHeading());
+    return m_yaw;
   }
 
-  /** Updates the field relative position of the robot. */
+  /**
+   * Updates the field relative position of the robot.
+   * <p>
+   * Integrates every sample the odometry thread collected since the last loop
+   * in order, after logging them so replay integrates the same samples.
+   */
   public void updateOdometry() {
-    m_odometry.update(
-        Rotation2d.fromDegrees(m_pigeon.getYaw()), getModulePositions());
-    System.out.println("odometry pose " + getPose());
+    if (m_odometryThread.isRunning()) {
+      m_odometryThread.drain(m_odometryInputs);
+    } else {
+      // Simulation has no odometry thread, use the loop snapshot as the only sample
+      m_odometryInputs.timestamps = new double[] { Timer.getFPGATimestamp() };
+      m_odometryInputs.yawDegrees = new double[] { m_yawDegrees };
+      m_odometryInputs.pitchDegrees = new double[] { m_gyroInputs.pitchDegrees };
+      m_odometryInputs.pitchRatesDegreesPerSec = new double[] { m_gyroInputs.pitchRateDegreesPerSec };
+      m_odometryInputs.drivePositionsMeters = new double[m_modules.length];
+      m_odometryInputs.turnPositionsRadians = new double[m_modules.length];
+      for (int i = 0; i < m_modules.length; i++) {
+        m_odometryInputs.drivePositionsMeters[i] = m_modules[i].getDrivePositionMeters();
+        m_odometryInputs.turnPositionsRadians[i] = m_modules[i].getTurnPositionRadians();
+      }
+    }
+    // In replay this replaces the samples with the logged ones
+    Logger.getInstance().processInputs("Drive/Odometry", m_odometryInputs);
+
+    int sampleCount = m_odometryInputs.timestamps.length;
+    if (sampleCount == 0) {
+      return;
+    }
+    // Without the gyro the sampled yaw is stale, spread this loop's wheel integrated yaw change over the samples
+    double fallbackStartDegrees = m_odometryYawDegrees;
+
+    for (int sample = 0; sample < sampleCount; sample++) {
+      for (int i = 0; i < m_modules.length; i++) {
+        int index = sample * m_modules.length + i;
+        m_odometryPositions[i].distanceMeters = m_odometryInputs.drivePositionsMeters[index];
+        double turnRadians = m_odometryInputs.turnPositionsRadians[index];
+        if (turnRadians != m_odometryTurnRadians[i]) {
+          m_odometryTurnRadians[i] = turnRadians;
+          m_odometryPositions[i].angle = new Rotation2d(turnRadians);
+        }
+      }
+      double yawDegrees = m_yawFallback
+          ? fallbackStartDegrees + (m_yawDegrees - fallbackStartDegrees) * (sample + 1) / sampleCount
+          : m_odometryInputs.yawDegrees[sample];
+      if (yawDegrees != m_odometryYawDegrees) {
+        m_odometryYawDegrees = yawDegrees;
+        m_odometryYaw = Rotation2d.fromDegrees(yawDegrees);
+      }
+      Pose2d samplePose = m_poseEstimator.updateWithTime(m_odometryInputs.timestamps[sample],
+          m_odometryYaw, m_odometryPositions);
+      m_poseHistory.add(m_odometryInputs.timestamps[sample], samplePose);
+      // Logs recorded before pitch was sampled have no pitch samples to replay
+      if (sample < m_odometryInputs.pitchDegrees.length) {
+        m_pitchEstimator.update(m_odometryInputs.timestamps[sample],
+            m_odometryInputs.pitchDegrees[sample], m_odometryInputs.pitchRatesDegreesPerSec[sample]);
+      }
+    }
+
+    Pose2d pose = m_poseEstimator.getEstimatedPosition();
+    m_pose = pose;
+    Diagnostics.debug("odometry pose x=%.3f y=%.3f deg=%.2f",
+        pose.getX(), pose.getY(), pose.getRotation().getDegrees());
   }
 
+  /**
+   * Returns the latest odometry pose. Never blocks and is safe to call from
+   * any thread.
+   *
+   * @return Field relative pose of the robot
+   */
   public Pose2d getPose() {
-    return m_odometry.getPoseMeters();
+    return m_pose;
   }
 
   public void resetOdometry(Pose2d position) {
-    m_odometry.resetPosition(getRotation2d(), getModulePositions(), position);
+    // Reset against the same samples odometry last integrated, so the next update has no jump
+    m_poseEstimator.resetPosition(m_odometryYaw, m_odometryPositions, position);
+    m_pose = m_poseEstimator.getEstimatedPosition();
+    // Older poses are in the previous frame and would corrupt lookups
+    m_poseHistory.clear();
+    m_poseResetListener.accept(position);
+  }
+
+  /**
+   * Sets a listener for odometry resets. In simulation this places the
+   * simulated robot at the reset pose, as if it was put there on the field.
+   *
+   * @param listener Called with the pose odometry was reset to
+   */
+  public void setPoseResetListener(Consumer<Pose2d> listener) {
+    m_poseResetListener = listener;
   }
 
+  /**
+   * Fuses a vision pose into the pose estimate. The estimator rewinds to the
+   * capture time and replays odometry from there, so latency is compensated.
+   * Must be called from the main robot thread.
+   *
+   * @param visionPose          Robot pose measured by vision
+   * @param timestampSeconds    FPGA timestamp the image was captured at
+   * @param xyStdDevMeters      Standard deviation of the x and y measurement
+   * @param thetaStdDevRadians  Standard deviation of the heading measurement
+   */
+  public void addVisionMeasurement(Pose2d visionPose, double timestampSeconds, double xyStdDevMeters,
+      double thetaStdDevRadians) {
+    m_poseEstimator.addVisionMeasurement(visionPose, timestampSeconds,
+        VecBuilder.fill(xyStdDevMeters, xyStdDevMeters, thetaStdDevRadians));
+    m_pose = m_poseEstimator.getEstimatedPosition();
+  }
+
+  /**
+   * Returns the interpolated odometry pose at a past time, for matching
+   * latency-delayed measurements like vision against where the robot was.
+   * Must be called from the main robot thread.
+   *
+   * @param timestampSeconds FPGA timestamp to look up
+   * @return Pose at that time, clamped to the stored history, or empty if
+   *         there is no history yet
+   */
+  public Optional<Pose2d> getPoseAt(double timestampSeconds) {
+    return m_poseHistory.sample(timestampSeconds);
+  }
+
+  /**
+   * Returns the current module positions.
+   * <p>
+   * The returned array and its elements are reused on every call, copy them if
+   * they need to be kept.
+   *
+   * @return Module positions in FL, FR, BL, BR order.
+   */
   public SwerveModulePosition[] getModulePositions() {
-    return new SwerveModulePosition[] {
-        m_frontLeftModule.getPosition(),
-        m_frontRightModule.getPosition(),
-        m_backLeftModule.getPosition(),
-        m_backRightModule.getPosition()
-    };
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].getPosition(m_modulePositions[i]);
+    }
+    return m_modulePositions;
   }
 
+  /**
+   * Returns the current module states.
+   * <p>
+   * The returned array and its elements are reused on every call, copy them if
+   * they need to be kept.
+   *
+   * @return Module states in FL, FR, BL, BR order.
+   */
   public SwerveModuleState[] getModuleStates() {
-    return new SwerveModuleState[] {
-      m_frontLeftModule.getState(),
-      m_frontRightModule.getState(),
-      m_backLeftModule.getState(),
-      m_backRightModule.getState()
-    };
+    for (int i = 0; i < m_modules.length; i++) {
+      m_modules[i].getState(m_measuredStates[i]);
+    }
+    return m_measuredStates;
+  }
+
+  /**
+   * @return Sampled gyro pitch in degrees
+   */
+  public double getPitch() {
+    return m_gyroInputs.pitchDegrees;
+  }
+
+  /**
+   * @return Sampled gyro roll in degrees
+   */
+  public double getRoll() {
+    return m_gyroInputs.rollDegrees;
+  }
+
+  /**
+   * @return Sampled gyro pitch rate in degrees per second
+   */
+  public double getPitchRate() {
+    return m_gyroInputs.pitchRateDegreesPerSec;
+  }
+
+  /**
+   * @return Pitch in degrees estimated from the high rate gyro samples
+   */
+  public double getEstimatedPitch() {
+    return m_pitchEstimator.getPitchDegrees();
+  }
+
+  /**
+   * @return Filtered pitch rate in degrees per second from the high rate gyro samples
+   */
+  public double getEstimatedPitchRate() {
+    return m_pitchEstimator.getPitchRateDegreesPerSec();
+  }
+
+  /**
+   * @return Sampled gyro yaw rate in degrees per second
+   */
+  public double getYawRate() {
+    return m_gyroInputs.yawRateDegreesPerSec;
   }
 
   public boolean onChargeStation() {
-    return Math.abs(m_pigeon.getPitch()) > 20;
+    return Math.abs(m_gyroInputs.pitchDegrees) > 20;
   }
 
   public boolean offPitchDown(){
-    return Math.abs(m_pigeon.getPitch()) > 14;
+    return Math.abs(m_gyroInputs.pitchDegrees) > 14;
   }
 
   public boolean onPitchDown() {
     // double[] angleRates = new double[3];
     // m_pigeon.getRawGyro(angleRates);
     // return onChargeStation() && angleRates[0] < -1;
-    return Math.abs(m_pigeon.getPitch()) < 12;
+    return Math.abs(m_gyroInputs.pitchDegrees) < 12;
   }
 
   public boolean onFlat(){
-    return Math.abs(m_pigeon.getPitch()) < 5;
+    return Math.abs(m_gyroInputs.pitchDegrees) < 5;
   }
 
   // public Rotation2d getYaw(){
   //   return Rotation2d.fromDegrees(360 - m_pigeon.getYaw());
   // }
 
+  /**
+   * Switches every module between closed loop velocity and open loop drive
+   * control, use {@link SwerveModule#setClosedLoop(boolean)} for one module.
+   *
+   * @param closedLoop Whether to run the drive motors closed loop
+   */
+  public void setDriveClosedLoop(boolean closedLoop) {
+    for (SwerveModule module : m_modules) {
+      module.setClosedLoop(closedLoop);
+    }
+  }
+
+  /**
+   * Keeps the drivetrain stopped for the rest of the run, for when hardware it
+   * needs failed. Raises an alert and logs Drive/Disabled.
+   *
+   * @param reason What failed, shown in the alert
+   */
+  public void disable(String reason) {
+    m_disabled = true;
+    new Alert("Drivetrain disabled, " + reason, AlertType.ERROR).set(true);
+    Logger.getInstance().recordOutput("Drive/Disabled", true);
+    stop();
+  }
+
+  /** Stops every module immediately, keeping their angles. */
   public void stop() {
-    drive(0.0, 0.0, 0.0, false);
+    for (int i = 0; i < m_modules.length; i++) {
+      m_moduleSpeeds[i] = 0.0;
+      m_modules[i].setDesiredState(0.0, m_moduleAngles[i]);
+    }
+    m_setpointGenerator.reset(m_moduleSpeeds, m_moduleAngles);
   }
 
   @Override
   public void periodic() {
     // This method will be called once per scheduler run
-    SmartDashboard.putNumber("Pitch", m_pigeon.getPitch());
-    SmartDashboard.putBoolean("On Charge Station", onChargeStation());
-    SmartDashboard.putBoolean("On Pitch Down", onPitchDown());
+    long start = LoopProfiler.start();
+    updateSensors();
+    LoopProfiler.stop(m_inputsProfilerId, start);
 
-    Logger.getInstance().recordOutput("heading", getPose().getRotation().getDegrees() + 180);
+    start = LoopProfiler.start();
+    updateOdometry();
+    LoopProfiler.stop(m_odometryProfilerId, start);
 
-    Logger.getInstance().recordOutput("odometry", getPose());
-    // Logger.getInstance().recordOutput("states", getModuleStates());
+    start = LoopProfiler.start();
+    Telemetry.putNumber("Pitch", m_gyroInputs.pitchDegrees, Priority.NORMAL, 0.1);
+    Logger.getInstance().recordOutput("Drive/EstimatedPitchDegrees", m_pitchEstimator.getPitchDegrees());
+    Logger.getInstance().recordOutput("Drive/EstimatedPitchRateDegreesPerSec",
+        m_pitchEstimator.getPitchRateDegreesPerSec());
+    Telemetry.putBoolean("On Charge Station", onChargeStation(), Priority.HIGH);
+    Telemetry.putBoolean("On Pitch Down", onPitchDown(), Priority.HIGH);
 
-    Logger.getInstance().recordOutput("3d pose", new Pose3d(getPose()));
+    Pose2d pose = getPose();
+    Logger.getInstance().recordOutput("heading", pose.getRotation().getDegrees() + 180);
 
-    SwerveModuleState[] measuredStates = new SwerveModuleState[] {null, null, null, null};
+    Logger.getInstance().recordOutput("odometry", pose);
 
-    for (int i = 0; i < 4; i++) {
-      measuredStates[i] = 
-        new SwerveModuleState(
-          getModuleStates()[i].speedMetersPerSecond,
-          getModuleStates()[i].angle);
-    }
+    // High rate outputs are only recorded every few cycles, counted the same way in replay so the outputs match
+    if (m_logCycle++ % Constants.LOG_DECIMATION_PERIOD == 0) {
+      Logger.getInstance().recordOutput("3d pose", new Pose3d(pose));
 
-    Logger.getInstance().recordOutput("measured states", measuredStates);
+      Logger.getInstance().recordOutput("measured states", getModuleStates());
+    }
+    LoopProfiler.stop(m_telemetryProfilerId, start);
   }
 
   public Command followTrajectoryCommand(PathPlannerTrajectory traj, boolean isFirstPath) {
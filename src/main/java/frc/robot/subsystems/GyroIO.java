@@ -0,0 +1,43 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import org.littletonrobotics.junction.AutoLog;
+
+/**
+ * Hardware abstraction for the drivetrain gyro.
+ * <p>
+ * The default methods do nothing and report the gyro as disconnected, which is
+ * used for replay and for simulation where heading comes from kinematics.
+ */
+public interface GyroIO {
+  @AutoLog
+  public static class GyroIOInputs {
+    public boolean connected = false;
+    public double yawDegrees = 0.0;
+    public double pitchDegrees = 0.0;
+    public double rollDegrees = 0.0;
+    public double yawRateDegreesPerSec = 0.0;
+    public double pitchRateDegreesPerSec = 0.0;
+    public double rollRateDegreesPerSec = 0.0;
+  }
+
+  /** Updates the set of loggable inputs. */
+  public default void updateInputs(GyroIOInputs inputs) {
+  }
+
+  /** Overwrite the yaw in degrees. */
+  public default void setYaw(double yawDegrees) {
+  }
+
+  /**
+   * Reads yaw, pitch and the raw pitch rate straight from the hardware, called
+   * from the odometry thread.
+   *
+   * @param gyroDegrees Array to fill with yaw and pitch in degrees, then pitch rate in degrees per second
+   */
+  public default void readSample(double[] gyroDegrees) {
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.ctre.phoenix.sensors.PigeonIMU;
+import com.ctre.phoenix.sensors.PigeonIMU.PigeonState;
+import com.ctre.phoenix.sensors.PigeonIMU_StatusFrame;
+
+import frc.robot.utils.CANBusLoad;
+
+/**
+ * Gyro IO for a CTRE Pigeon IMU.
+ * <p>
+ * Angles and rates are each read with a single call per loop, and the status
+ * frames are retimed so the Pigeon only sends what the robot reads at the rate
+ * it reads it. Yaw, pitch and the raw gyro rates are also sampled by the
+ * odometry thread, so both frames run at the odometry rate.
+ */
+public class GyroIOPigeon implements GyroIO {
+  // Phoenix 5 status frame periods are sent as a byte
+  private static final int MIN_FRAME_PERIOD_MS = 5;
+  private static final int UNUSED_FRAME_PERIOD_MS = 255;
+
+  private final PigeonIMU m_pigeon;
+  private final String m_deviceName;
+  private final double[] m_yawPitchRoll = new double[3];
+  private final double[] m_rates = new double[3];
+  // Only used by the odometry thread
+  private final double[] m_sampleYawPitchRoll = new double[3];
+  private final double[] m_sampleRates = new double[3];
+
+  /**
+   * Create a Pigeon gyro IO
+   *
+   * @param pigeonID            CAN ID of the Pigeon
+   * @param samplePeriodSeconds How often angles and rates are read, the odometry sample period
+   */
+  public GyroIOPigeon(int pigeonID, double samplePeriodSeconds) {
+    m_pigeon = new PigeonIMU(pigeonID);
+    m_deviceName = "Pigeon " + pigeonID;
+
+    setFramePeriod(PigeonIMU_StatusFrame.CondStatus_9_SixDeg_YPR, toFramePeriodMs(samplePeriodSeconds));
+    setFramePeriod(PigeonIMU_StatusFrame.BiasedStatus_2_Gyro, toFramePeriodMs(samplePeriodSeconds));
+
+    // Frames nothing reads
+    setFramePeriod(PigeonIMU_StatusFrame.CondStatus_6_SensorFusion, UNUSED_FRAME_PERIOD_MS);
+    setFramePeriod(PigeonIMU_StatusFrame.CondStatus_10_SixDeg_Quat, UNUSED_FRAME_PERIOD_MS);
+    setFramePeriod(PigeonIMU_StatusFrame.CondStatus_11_GyroAccum, UNUSED_FRAME_PERIOD_MS);
+    setFramePeriod(PigeonIMU_StatusFrame.CondStatus_2_GeneralCompass, UNUSED_FRAME_PERIOD_MS);
+    setFramePeriod(PigeonIMU_StatusFrame.CondStatus_3_GeneralAccel, UNUSED_FRAME_PERIOD_MS);
+    setFramePeriod(PigeonIMU_StatusFrame.RawStatus_4_Mag, UNUSED_FRAME_PERIOD_MS);
+    setFramePeriod(PigeonIMU_StatusFrame.BiasedStatus_4_Mag, UNUSED_FRAME_PERIOD_MS);
+    setFramePeriod(PigeonIMU_StatusFrame.BiasedStatus_6_Accel, UNUSED_FRAME_PERIOD_MS);
+  }
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+    inputs.connected = m_pigeon.getState() == PigeonState.Ready;
+
+    m_pigeon.getYawPitchRoll(m_yawPitchRoll);
+    inputs.yawDegrees = m_yawPitchRoll[0];
+    inputs.pitchDegrees = m_yawPitchRoll[1];
+    inputs.rollDegrees = m_yawPitchRoll[2];
+
+    // Raw gyro rates are about the x, y and z axes
+    m_pigeon.getRawGyro(m_rates);
+    inputs.rollRateDegreesPerSec = m_rates[0];
+    inputs.pitchRateDegreesPerSec = m_rates[1];
+    inputs.yawRateDegreesPerSec = m_rates[2];
+  }
+
+  @Override
+  public void setYaw(double yawDegrees) {
+    m_pigeon.setYaw(yawDegrees);
+  }
+
+  @Override
+  public void readSample(double[] gyroDegrees) {
+    // One read per status frame, angles and raw rates come in different frames
+    m_pigeon.getYawPitchRoll(m_sampleYawPitchRoll);
+    m_pigeon.getRawGyro(m_sampleRates);
+    gyroDegrees[0] = m_sampleYawPitchRoll[0];
+    gyroDegrees[1] = m_sampleYawPitchRoll[1];
+    gyroDegrees[2] = m_sampleRates[1];
+  }
+
+  private void setFramePeriod(PigeonIMU_StatusFrame frame, int periodMs) {
+    m_pigeon.setStatusFramePeriod(frame, periodMs);
+    CANBusLoad.setFramePeriod(m_deviceName, frame.name(), periodMs);
+  }
+
+  private static int toFramePeriodMs(double periodSeconds) {
+    return (int) Math.max(MIN_FRAME_PERIOD_MS, Math.min(UNUSED_FRAME_PERIOD_MS, Math.round(periodSeconds * 1000)));
+  }
+}
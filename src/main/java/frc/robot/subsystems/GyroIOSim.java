@@ -0,0 +1,61 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants;
+
+/**
+ * Gyro IO for simulation.
+ * <p>
+ * Yaw rate is the chassis rotation implied by the simulated modules' wheel
+ * speeds and angles. It must be updated after the modules each loop. Pitch and
+ * roll stay level.
+ */
+public class GyroIOSim implements GyroIO {
+  private final SwerveModuleIOSim[] m_modules;
+  private final SwerveModuleState[] m_states;
+
+  private double m_yawDegrees = 0.0;
+
+  /**
+   * Create a simulated gyro
+   *
+   * @param modules Simulated modules in FL, FR, BL, BR order
+   */
+  public GyroIOSim(SwerveModuleIOSim... modules) {
+    m_modules = modules;
+    m_states = new SwerveModuleState[modules.length];
+    for (int i = 0; i < modules.length; i++) {
+      m_states[i] = new SwerveModuleState();
+    }
+  }
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+    for (int i = 0; i < m_modules.length; i++) {
+      m_states[i].speedMetersPerSecond = m_modules[i].getDriveVelocityMetersPerSec();
+      m_states[i].angle = new Rotation2d(m_modules[i].getTurnAngleRad());
+    }
+    double yawRateDegreesPerSec = Math.toDegrees(
+        Constants.DRIVE_KINEMATICS.toChassisSpeeds(m_states).omegaRadiansPerSecond);
+    m_yawDegrees += yawRateDegreesPerSec * Constants.LOOP_PERIOD_SECONDS;
+
+    inputs.connected = true;
+    inputs.yawDegrees = m_yawDegrees;
+    inputs.yawRateDegreesPerSec = yawRateDegreesPerSec;
+  }
+
+  @Override
+  public void setYaw(double yawDegrees) {
+    m_yawDegrees = yawDegrees;
+  }
+
+  @Override
+  public void readSample(double[] gyroDegrees) {
+    gyroDegrees[0] = m_yawDegrees;
+  }
+}
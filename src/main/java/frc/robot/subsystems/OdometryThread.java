@@ -0,0 +1,187 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.littletonrobotics.junction.AutoLog;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Samples swerve module positions and gyro yaw, pitch and pitch rate faster
+ * than the 20 ms main loop.
+ * <p>
+ * A {@link Notifier} calls the sampler at a fixed rate and pushes each sample
+ * into a preallocated single-producer/single-consumer ring. Once per loop the
+ * main thread drains the ring into {@link OdometryInputs}, which are logged
+ * with AdvantageKit and then integrated into odometry, so replay sees exactly
+ * the same samples the robot did.
+ */
+public class OdometryThread {
+  /** High-rate odometry samples collected since the last loop. */
+  @AutoLog
+  public static class OdometryInputs {
+    public double[] timestamps = new double[] {};
+    public double[] yawDegrees = new double[] {};
+    public double[] pitchDegrees = new double[] {};
+    public double[] pitchRatesDegreesPerSec = new double[] {};
+    // Interleaved by module, sample i module j is at [i * moduleCount + j]
+    public double[] drivePositionsMeters = new double[] {};
+    public double[] turnPositionsRadians = new double[] {};
+  }
+
+  /** Reads one set of raw sensor values, called from the odometry thread. */
+  @FunctionalInterface
+  public interface Sampler {
+    /**
+     * Reads the current sensor values.
+     *
+     * @param drivePositionsMeters Array to fill with module drive distances
+     * @param turnPositionsRadians Array to fill with module angles
+     * @param gyroDegrees          Array to fill with gyro yaw and pitch in degrees, then pitch rate in degrees
+     *                             per second
+     */
+    void sample(double[] drivePositionsMeters, double[] turnPositionsRadians, double[] gyroDegrees);
+  }
+
+  public static final double MIN_FREQUENCY_HZ = 100.0;
+  public static final double MAX_FREQUENCY_HZ = 250.0;
+
+  private static final int CAPACITY = 64;
+
+  private final Notifier m_notifier;
+  private final Sampler m_sampler;
+  private final int m_moduleCount;
+  private final double m_frequencyHz;
+
+  // Sample ring, written only by the notifier thread and read only by the main thread
+  private final double[] m_timestamps = new double[CAPACITY];
+  private final double[] m_yaws = new double[CAPACITY];
+  private final double[] m_pitches = new double[CAPACITY];
+  private final double[] m_pitchRates = new double[CAPACITY];
+  private final double[] m_drivePositions;
+  private final double[] m_turnPositions;
+  private final double[] m_driveScratch;
+  private final double[] m_turnScratch;
+  private final double[] m_gyroScratch = new double[3];
+  private final AtomicLong m_head = new AtomicLong();
+  private final AtomicLong m_tail = new AtomicLong();
+  private final AtomicLong m_dropped = new AtomicLong();
+
+  private boolean m_running = false;
+
+  /**
+   * Create an odometry sampling thread
+   *
+   * @param moduleCount Number of swerve modules sampled
+   * @param frequencyHz Sample rate, clamped to [100, 250] Hz
+   * @param sampler     Reads the sensors, called from the odometry thread
+   */
+  public OdometryThread(int moduleCount, double frequencyHz, Sampler sampler) {
+    m_moduleCount = moduleCount;
+    m_frequencyHz = MathUtil.clamp(frequencyHz, MIN_FREQUENCY_HZ, MAX_FREQUENCY_HZ);
+    m_sampler = sampler;
+
+    m_drivePositions = new double[CAPACITY * moduleCount];
+    m_turnPositions = new double[CAPACITY * moduleCount];
+    m_driveScratch = new double[moduleCount];
+    m_turnScratch = new double[moduleCount];
+
+    m_notifier = new Notifier(this::sample);
+    m_notifier.setName("OdometryThread");
+  }
+
+  /** Starts sampling. */
+  public void start() {
+    if (!m_running) {
+      m_running = true;
+      m_notifier.startPeriodic(1.0 / m_frequencyHz);
+    }
+  }
+
+  /** Stops sampling. */
+  public void stop() {
+    m_notifier.stop();
+    m_running = false;
+  }
+
+  /**
+   * @return Whether the thread is sampling
+   */
+  public boolean isRunning() {
+    return m_running;
+  }
+
+  /**
+   * @return Sample rate in Hz
+   */
+  public double getFrequencyHz() {
+    return m_frequencyHz;
+  }
+
+  /**
+   * @return Number of samples dropped because the main loop didn't drain in time
+   */
+  public long getDroppedCount() {
+    return m_dropped.get();
+  }
+
+  /**
+   * Moves every sample collected since the last call into the inputs. Must
+   * only be called from the main robot thread.
+   *
+   * @param inputs Inputs to fill, arrays are replaced since the logger keeps them
+   */
+  public void drain(OdometryInputs inputs) {
+    long head = m_head.get();
+    int count = (int) (m_tail.get() - head);
+
+    inputs.timestamps = new double[count];
+    inputs.yawDegrees = new double[count];
+    inputs.pitchDegrees = new double[count];
+    inputs.pitchRatesDegreesPerSec = new double[count];
+    inputs.drivePositionsMeters = new double[count * m_moduleCount];
+    inputs.turnPositionsRadians = new double[count * m_moduleCount];
+
+    for (int i = 0; i < count; i++) {
+      int index = (int) ((head + i) % CAPACITY);
+      inputs.timestamps[i] = m_timestamps[index];
+      inputs.yawDegrees[i] = m_yaws[index];
+      inputs.pitchDegrees[i] = m_pitches[index];
+      inputs.pitchRatesDegreesPerSec[i] = m_pitchRates[index];
+      System.arraycopy(m_drivePositions, index * m_moduleCount,
+          inputs.drivePositionsMeters, i * m_moduleCount, m_moduleCount);
+      System.arraycopy(m_turnPositions, index * m_moduleCount,
+          inputs.turnPositionsRadians, i * m_moduleCount, m_moduleCount);
+    }
+
+    m_head.set(head + count);
+  }
+
+  private void sample() {
+    double timestamp = Timer.getFPGATimestamp();
+    m_sampler.sample(m_driveScratch, m_turnScratch, m_gyroScratch);
+
+    long tail = m_tail.get();
+    if (tail - m_head.get() >= CAPACITY) {
+      m_dropped.incrementAndGet();
+      return;
+    }
+
+    int index = (int) (tail % CAPACITY);
+    m_timestamps[index] = timestamp;
+    m_yaws[index] = m_gyroScratch[0];
+    m_pitches[index] = m_gyroScratch[1];
+    m_pitchRates[index] = m_gyroScratch[2];
+    System.arraycopy(m_driveScratch, 0, m_drivePositions, index * m_moduleCount, m_moduleCount);
+    System.arraycopy(m_turnScratch, 0, m_turnPositions, index * m_moduleCount, m_moduleCount);
+
+    // Publish the sample to the main thread
+    m_tail.set(tail + 1);
+  }
+}
@@ -1,75 +1,57 @@
 package frc.robot.subsystems;
 
-import com.ctre.phoenix.motorcontrol.NeutralMode;
-import com.ctre.phoenix.motorcontrol.StatorCurrentLimitConfiguration;
-import com.ctre.phoenix.motorcontrol.TalonFXControlMode;
-import com.ctre.phoenix.motorcontrol.can.TalonFX;
-import com.ctre.phoenix.sensors.CANCoder;
-import com.revrobotics.CANSparkMax;
-import com.revrobotics.CANSparkMax.ControlType;
-import com.revrobotics.CANSparkMax.IdleMode;
-import com.revrobotics.CANSparkMaxLowLevel.MotorType;
-import com.revrobotics.RelativeEncoder;
+import org.littletonrobotics.junction.Logger;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.filter.LinearFilter;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
-import frc.robot.SparkPIDConfig;
+import frc.robot.utils.LoopProfiler;
 
 public class SwerveModule extends SubsystemBase {
 
-  private final TalonFX m_driveMotor;
-  private final CANSparkMax m_turnMotor;
-  private final CANCoder m_absEncoder;
-  private final RelativeEncoder m_turnEncoder;
+  private final SwerveModuleIO m_io;
+  private final SwerveModuleIOInputsAutoLogged m_inputs = new SwerveModuleIOInputsAutoLogged();
+  private final String m_logKey;
   private final double m_steerOffset;
-  private final StatorCurrentLimitConfiguration m_driveMotorCurrentLimit;
-
-  // Gains are for example purposes only - must be determined for your own robot!
-  // private final SimpleMotorFeedforward m_driveFeedforward = new
-  // SimpleMotorFeedforward(1, 3);
-  // private final SimpleMotorFeedforward m_turnFeedforward = new
-  // SimpleMotorFeedforward(1, 0.5);
+  private final int m_profilerId;
+  private final String m_closedLoopKey;
+  private final String m_velocitySetpointKey;
+  private final String m_velocityErrorKey;
+  private final String m_velocityErrorRmsKey;
+
+  private final SimpleMotorFeedforward m_driveFeedforward = new SimpleMotorFeedforward(
+      Constants.DRIVE_KS_VOLTS, Constants.DRIVE_KV_VOLT_SECONDS_PER_METER);
+  // Mean of the squared wheel speed error over the tracking window
+  private final LinearFilter m_velocityErrorSquaredFilter = LinearFilter.movingAverage(
+      Constants.DRIVE_TRACKING_ERROR_WINDOW);
+  private boolean m_closedLoop = Constants.DRIVE_CLOSED_LOOP;
+  private double m_velocitySetpoint = 0.0;
+  private boolean m_closedLoopLogged = false;
+
+  private double m_lastAngleRadians = 0.0;
+  private Rotation2d m_lastAngle = new Rotation2d();
 
   /**
-   * Creates a swerve module with a drive motor,
-   * turn motor, absolute encoder, and steer offset.
+   * Creates a swerve module on top of its hardware IO.
    * 
-   * @param driveMotorPort CAN ID for Falcon Drive Motor
-   * @param turnMotorPort  CAN ID for NEO Turn Motor
-   * @param absEncoderID   CAN ID for CANCoder Absolute Encoder per module
-   * @param steerOffset    Encoder steer offset for each module (in radians)
-   */
-  public SwerveModule(int driveMotorPort, int turnMotorPort, int absEncoderID, double steerOffset,
-      SparkPIDConfig turnMotorConfig, boolean driveInverted, boolean turnInverted) {
-
-    m_driveMotor = new TalonFX(driveMotorPort);
-    m_turnMotor = new CANSparkMax(turnMotorPort, MotorType.kBrushless);
-    m_absEncoder = new CANCoder(absEncoderID);
-    m_turnEncoder = m_turnMotor.getEncoder();
+   * @param io          Hardware IO for the module (real, simulated or replay)
+   * @param name        Module name used for log keys
+   * @param steerOffset Encoder steer offset for each module (in degrees)
+   */
+  public SwerveModule(SwerveModuleIO io, String name, double steerOffset) {
+    m_io = io;
+    m_logKey = "Drive/Module" + name;
+    m_profilerId = LoopProfiler.registerPeriodic("SwerveModule" + name + "/Periodic");
     m_steerOffset = steerOffset;
-    m_driveMotorCurrentLimit = new StatorCurrentLimitConfiguration(
-        true,
-        Constants.DRIVE_CURRENT_LIMIT,
-        Constants.DRIVE_CURRENT_THRESHOLD,
-        Constants.DRIVE_CURRENT_TIME_THRESHOLD);
-
-    var turnPidController = turnMotorConfig.initializeSparkPID(m_turnMotor);
-
-    turnPidController.setPositionPIDWrappingEnabled(true);
-    turnPidController.setPositionPIDWrappingMaxInput(+Math.PI);
-    turnPidController.setPositionPIDWrappingMinInput(-Math.PI);
-
-    m_driveMotor.setNeutralMode(NeutralMode.Brake);
-    m_turnMotor.setIdleMode(IdleMode.kCoast);
-
-    m_driveMotor.setInverted(driveInverted);
-    m_turnMotor.setInverted(turnInverted);
-
-    m_driveMotor.configStatorCurrentLimit(m_driveMotorCurrentLimit);
-    m_turnMotor.setSmartCurrentLimit(Constants.TURN_CURRENT_LIMIT);
+    m_closedLoopKey = m_logKey + "/DriveClosedLoop";
+    m_velocitySetpointKey = m_logKey + "/DriveVelocitySetpoint";
+    m_velocityErrorKey = m_logKey + "/DriveVelocityError";
+    m_velocityErrorRmsKey = m_logKey + "/DriveVelocityErrorRms";
 
     // Seed the relative encoders with absolute values after a couple seconds to
     // ensure correct values
@@ -77,6 +59,37 @@ public class SwerveModule extends SubsystemBase {
     // -> m_turnEncoder.setPosition(m_absEncoder.getAbsolutePosition() -
     // steerOffset))).schedule();
     // m_turnEncoder.setPosition(m_absEncoder.getAbsolutePosition() - steerOffset);
+
+    m_io.updateInputs(m_inputs);
+  }
+
+  /**
+   * Samples the module hardware into its logged inputs. Should be called once
+   * per loop before anything reads the module.
+   */
+  public void updateInputs() {
+    m_io.updateInputs(m_inputs);
+    Logger.getInstance().processInputs(m_logKey, m_inputs);
+  }
+
+  /**
+   * Reads the drive distance straight from the hardware, bypassing the
+   * snapshot. Safe to call from the odometry thread.
+   *
+   * @return Drive distance in meters
+   */
+  public double readDrivePositionMeters() {
+    return m_io.readDrivePositionMeters();
+  }
+
+  /**
+   * Reads the module angle straight from the hardware, bypassing the
+   * snapshot. Safe to call from the odometry thread.
+   *
+   * @return Module angle in radians
+   */
+  public double readTurnPositionRadians() {
+    return m_io.readTurnPositionRadians();
   }
 
   /**
@@ -85,9 +98,17 @@ public class SwerveModule extends SubsystemBase {
    * @return The current state of the module.
    */
   public SwerveModuleState getState() {
-    return new SwerveModuleState(
-        10 * m_driveMotor.getSelectedSensorVelocity() * Constants.DRIVE_MOTOR_CONVERSION_FACTOR,
-        new Rotation2d(m_turnEncoder.getPosition()));
+    return new SwerveModuleState(m_inputs.driveVelocityMetersPerSec, getAngle());
+  }
+
+  /**
+   * Writes the current state of the module into an existing object.
+   *
+   * @param state Module state to update.
+   */
+  public void getState(SwerveModuleState state) {
+    state.speedMetersPerSecond = m_inputs.driveVelocityMetersPerSec;
+    state.angle = getAngle();
   }
 
   /**
@@ -96,25 +117,113 @@ public class SwerveModule extends SubsystemBase {
    * @param desiredState Desired state with speed and angle.
    */
   public void setDesiredState(SwerveModuleState desiredState) {
+    setDesiredState(desiredState.speedMetersPerSecond, desiredState.angle.getRadians());
+  }
+
+  /**
+   * Sets the desired state for the module without allocating.
+   *
+   * @param speedMetersPerSecond Desired wheel speed in meters per second.
+   * @param angleRadians         Desired module angle in radians.
+   */
+  public void setDesiredState(double speedMetersPerSecond, double angleRadians) {
     // Optimize the reference state to avoid spinning further than 90 degrees
-    SwerveModuleState state = SwerveModuleState.optimize(desiredState, new Rotation2d((m_turnEncoder.getPosition())));
+    double delta = MathUtil.angleModulus(angleRadians - m_inputs.turnPositionRad);
+    if (Math.abs(delta) > Math.PI / 2) {
+      speedMetersPerSecond = -speedMetersPerSecond;
+      angleRadians += Math.PI;
+    }
+
+    // Tracking is logged once per loop from periodic(), not on every call
+    m_velocitySetpoint = speedMetersPerSecond;
+
+    if (m_closedLoop) {
+      m_io.setDriveVelocity(speedMetersPerSecond, m_driveFeedforward.calculate(speedMetersPerSecond));
+    } else {
+      m_io.setDriveOutput(speedMetersPerSecond / Constants.MAX_VELOCITY_METERS_PER_SECOND);
+    }
+    m_io.setTurnPosition(MathUtil.angleModulus(angleRadians));
+  }
 
-    m_driveMotor.set(TalonFXControlMode.PercentOutput,
-        state.speedMetersPerSecond / Constants.MAX_VELOCITY_METERS_PER_SECOND);
-    m_turnMotor.getPIDController().setReference(state.angle.getRadians(), ControlType.kPosition);
+  /**
+   * Switches the drive motor between the onboard velocity loop and open loop
+   * percent output scaled by the max speed.
+   *
+   * @param closedLoop Whether to run the drive motor closed loop
+   */
+  public void setClosedLoop(boolean closedLoop) {
+    m_closedLoop = closedLoop;
+    m_closedLoopLogged = false;
+  }
+
+  /**
+   * @return Whether the drive motor runs closed loop
+   */
+  public boolean isClosedLoop() {
+    return m_closedLoop;
   }
 
   public SwerveModulePosition getPosition() {
-    return new SwerveModulePosition(
-        m_driveMotor.getSelectedSensorPosition() * Constants.DRIVE_MOTOR_CONVERSION_FACTOR,
-        new Rotation2d(m_turnEncoder.getPosition()));
+    return new SwerveModulePosition(m_inputs.drivePositionMeters, getAngle());
+  }
+
+  /**
+   * Writes the current position of the module into an existing object.
+   *
+   * @param position Module position to update.
+   */
+  public void getPosition(SwerveModulePosition position) {
+    position.distanceMeters = m_inputs.drivePositionMeters;
+    position.angle = getAngle();
+  }
+
+  /**
+   * @return Sampled drive distance in meters
+   */
+  public double getDrivePositionMeters() {
+    return m_inputs.drivePositionMeters;
+  }
+
+  /**
+   * @return Sampled drive velocity in meters per second
+   */
+  public double getDriveVelocityMetersPerSecond() {
+    return m_inputs.driveVelocityMetersPerSec;
+  }
+
+  /**
+   * @return Sampled module angle in radians
+   */
+  public double getTurnPositionRadians() {
+    return m_inputs.turnPositionRad;
+  }
+
+  /**
+   * @return Sampled CANCoder absolute position in degrees
+   */
+  public double getAbsolutePositionDegrees() {
+    return m_inputs.turnAbsolutePositionDeg;
+  }
+
+  /**
+   * Returns the sampled module angle, only creating a new {@link Rotation2d}
+   * when the angle has changed. Rotation2d is immutable, so this is as close
+   * to allocation free as it gets; the control path works in radians and
+   * doesn't call it.
+   */
+  private Rotation2d getAngle() {
+    if (m_inputs.turnPositionRad != m_lastAngleRadians) {
+      m_lastAngleRadians = m_inputs.turnPositionRad;
+      m_lastAngle = new Rotation2d(m_inputs.turnPositionRad);
+    }
+    return m_lastAngle;
   }
 
   public String toString() {
     String res = "\n\tABS-POS: ";
-    res += m_absEncoder.getAbsolutePosition() % 180;
+    res += m_inputs.turnAbsolutePositionDeg % 180;
     res += "\n\tREL-POS: ";
-    res += Math.toDegrees(m_turnEncoder.getPosition()) % 180;
+    res += Math.toDegrees(m_inputs.turnPositionRad) % 180;
     return res;
   }
 
@@ -122,8 +231,22 @@ public class SwerveModule extends SubsystemBase {
 
   @Override
   public void periodic() {
+    long start = LoopProfiler.start();
     if (resetLoop++ == 300) {
-      m_turnEncoder.setPosition(Math.toRadians(m_absEncoder.getAbsolutePosition() - m_steerOffset));
+      m_inputs.turnPositionRad = Math.toRadians(m_inputs.turnAbsolutePositionDeg - m_steerOffset);
+      m_io.resetTurnPosition(m_inputs.turnPositionRad);
+    }
+
+    // Runs after the drivetrain sampled the inputs, so the measured speed is the response to the last setpoint
+    double error = m_velocitySetpoint - m_inputs.driveVelocityMetersPerSec;
+    double errorRms = Math.sqrt(m_velocityErrorSquaredFilter.calculate(error * error));
+    if (!m_closedLoopLogged) {
+      Logger.getInstance().recordOutput(m_closedLoopKey, m_closedLoop);
+      m_closedLoopLogged = true;
     }
+    Logger.getInstance().recordOutput(m_velocitySetpointKey, m_velocitySetpoint);
+    Logger.getInstance().recordOutput(m_velocityErrorKey, error);
+    Logger.getInstance().recordOutput(m_velocityErrorRmsKey, errorRms);
+    LoopProfiler.stop(m_profilerId, start);
   }
 }
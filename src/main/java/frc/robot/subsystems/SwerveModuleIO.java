@@ -0,0 +1,69 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import org.littletonrobotics.junction.AutoLog;
+
+/**
+ * Hardware abstraction for one swerve module.
+ * <p>
+ * The default methods do nothing, so {@code new SwerveModuleIO() {}} is the
+ * replay implementation: inputs are filled from the log instead.
+ */
+public interface SwerveModuleIO {
+  @AutoLog
+  public static class SwerveModuleIOInputs {
+    public double drivePositionMeters = 0.0;
+    public double driveVelocityMetersPerSec = 0.0;
+    public double driveAppliedOutput = 0.0;
+    public double driveCurrentAmps = 0.0;
+
+    public double turnPositionRad = 0.0;
+    public double turnAbsolutePositionDeg = 0.0;
+    public double turnAppliedOutput = 0.0;
+    public double turnCurrentAmps = 0.0;
+  }
+
+  /** Updates the set of loggable inputs. */
+  public default void updateInputs(SwerveModuleIOInputs inputs) {
+  }
+
+  /** Run the drive motor at the specified percent output [-1.0, +1.0]. */
+  public default void setDriveOutput(double percent) {
+  }
+
+  /**
+   * Run the drive motor closed loop at the specified wheel speed.
+   *
+   * @param velocityMetersPerSec Wheel speed setpoint
+   * @param feedforwardVolts     Feedforward added to the PID output
+   */
+  public default void setDriveVelocity(double velocityMetersPerSec, double feedforwardVolts) {
+  }
+
+  /** Run the turn motor closed loop to the specified angle in radians. */
+  public default void setTurnPosition(double angleRadians) {
+  }
+
+  /** Overwrite the turn motor's relative encoder position in radians. */
+  public default void resetTurnPosition(double angleRadians) {
+  }
+
+  /**
+   * Reads the drive distance straight from the hardware, called from the
+   * odometry thread.
+   */
+  public default double readDrivePositionMeters() {
+    return 0.0;
+  }
+
+  /**
+   * Reads the module angle straight from the hardware, called from the
+   * odometry thread.
+   */
+  public default double readTurnPositionRadians() {
+    return 0.0;
+  }
+}
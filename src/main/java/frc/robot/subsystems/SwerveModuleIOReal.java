@@ -0,0 +1,139 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.ctre.phoenix.motorcontrol.DemandType;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.TalonFXControlMode;
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
+import com.ctre.phoenix.sensors.CANCoder;
+import com.ctre.phoenix.sensors.CANCoderStatusFrame;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMax.ControlType;
+import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkMaxPIDController;
+
+import frc.robot.Constants;
+import frc.robot.SparkPIDConfig;
+import frc.robot.TalonPIDConfig;
+import frc.robot.utils.ActuatorOutput;
+import frc.robot.utils.CANBusLoad;
+
+/** Swerve module IO for a Falcon 500 drive motor, NEO turn motor and CANCoder. */
+public class SwerveModuleIOReal implements SwerveModuleIO {
+  private final TalonFX m_driveMotor;
+  private final CANSparkMax m_turnMotor;
+  private final CANCoder m_absEncoder;
+  private final RelativeEncoder m_turnEncoder;
+  private final SparkMaxPIDController m_turnPidController;
+  private final ActuatorOutput m_driveOutput;
+  private final ActuatorOutput m_turnOutput;
+  // Compensation is only on while the drive motor runs closed loop, open loop follows the battery voltage
+  private boolean m_driveVoltageCompensation = false;
+
+  /**
+   * Creates the hardware for a swerve module with a drive motor,
+   * turn motor and absolute encoder.
+   * 
+   * @param driveMotorPort  CAN ID for Falcon Drive Motor
+   * @param turnMotorPort   CAN ID for NEO Turn Motor
+   * @param absEncoderID    CAN ID for CANCoder Absolute Encoder per module
+   * @param driveMotorConfig Velocity PID config for the drive motor
+   * @param turnMotorConfig PID config for the turn motor
+   * @param driveInverted   Invert the drive motor
+   * @param turnInverted    Invert the turn motor
+   */
+  public SwerveModuleIOReal(int driveMotorPort, int turnMotorPort, int absEncoderID,
+      TalonPIDConfig driveMotorConfig, SparkPIDConfig turnMotorConfig, boolean driveInverted, boolean turnInverted) {
+
+    m_driveMotor = new TalonFX(driveMotorPort);
+    m_turnMotor = new CANSparkMax(turnMotorPort, MotorType.kBrushless);
+    m_absEncoder = new CANCoder(absEncoderID);
+    m_turnEncoder = m_turnMotor.getEncoder();
+    m_driveOutput = new ActuatorOutput("Talon " + driveMotorPort, Constants.DRIVE_SETPOINT_THRESHOLD);
+    m_turnOutput = new ActuatorOutput("SparkMax " + turnMotorPort, Constants.TURN_SETPOINT_THRESHOLD_RADIANS);
+
+    m_turnPidController = turnMotorConfig.initializeSparkPID(m_turnMotor);
+    driveMotorConfig.initializeTalonPID(m_driveMotor, FeedbackDevice.IntegratedSensor);
+
+    m_driveMotor.setInverted(driveInverted);
+    m_turnMotor.setInverted(turnInverted);
+
+    m_absEncoder.setStatusFramePeriod(CANCoderStatusFrame.SensorData, Constants.STEER_ENCODER_SENSOR_DATA_PERIOD_MS);
+    m_absEncoder.setStatusFramePeriod(CANCoderStatusFrame.VbatAndFaults, Constants.STEER_ENCODER_FAULTS_PERIOD_MS);
+    String encoderName = "CANCoder " + absEncoderID;
+    CANBusLoad.setFramePeriod(encoderName, CANCoderStatusFrame.SensorData.name(),
+        Constants.STEER_ENCODER_SENSOR_DATA_PERIOD_MS);
+    CANBusLoad.setFramePeriod(encoderName, CANCoderStatusFrame.VbatAndFaults.name(),
+        Constants.STEER_ENCODER_FAULTS_PERIOD_MS);
+  }
+
+  @Override
+  public void updateInputs(SwerveModuleIOInputs inputs) {
+    inputs.drivePositionMeters = readDrivePositionMeters();
+    inputs.driveVelocityMetersPerSec = 10 * m_driveMotor.getSelectedSensorVelocity()
+        * Constants.DRIVE_MOTOR_CONVERSION_FACTOR;
+    inputs.driveAppliedOutput = m_driveMotor.getMotorOutputPercent();
+    inputs.driveCurrentAmps = m_driveMotor.getStatorCurrent();
+
+    inputs.turnPositionRad = readTurnPositionRadians();
+    inputs.turnAbsolutePositionDeg = m_absEncoder.getAbsolutePosition();
+    inputs.turnAppliedOutput = m_turnMotor.getAppliedOutput();
+    inputs.turnCurrentAmps = m_turnMotor.getOutputCurrent();
+  }
+
+  @Override
+  public void setDriveOutput(double percent) {
+    if (m_driveOutput.shouldWrite(TalonFXControlMode.PercentOutput.ordinal(), percent)) {
+      setDriveVoltageCompensation(false);
+      m_driveMotor.set(TalonFXControlMode.PercentOutput, percent);
+    }
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityMetersPerSec, double feedforwardVolts) {
+    if (!m_driveOutput.shouldWrite(TalonFXControlMode.Velocity.ordinal(), velocityMetersPerSec, feedforwardVolts)) {
+      return;
+    }
+    // Velocity is in ticks per 100 ms, the feedforward a fraction of the compensated voltage
+    setDriveVoltageCompensation(true);
+    m_driveMotor.set(TalonFXControlMode.Velocity,
+        velocityMetersPerSec / Constants.DRIVE_MOTOR_CONVERSION_FACTOR / 10,
+        DemandType.ArbitraryFeedForward,
+        feedforwardVolts / Constants.MAX_VOLTAGE);
+  }
+
+  @Override
+  public void setTurnPosition(double angleRadians) {
+    if (m_turnOutput.shouldWrite(ControlType.kPosition.ordinal(), angleRadians)) {
+      m_turnPidController.setReference(angleRadians, ControlType.kPosition);
+    }
+  }
+
+  @Override
+  public void resetTurnPosition(double angleRadians) {
+    m_turnEncoder.setPosition(angleRadians);
+    // The same angle is a different encoder position now
+    m_turnOutput.invalidate();
+  }
+
+  private void setDriveVoltageCompensation(boolean enabled) {
+    if (enabled != m_driveVoltageCompensation) {
+      m_driveMotor.enableVoltageCompensation(enabled);
+      m_driveVoltageCompensation = enabled;
+    }
+  }
+
+  @Override
+  public double readDrivePositionMeters() {
+    return m_driveMotor.getSelectedSensorPosition() * Constants.DRIVE_MOTOR_CONVERSION_FACTOR;
+  }
+
+  @Override
+  public double readTurnPositionRadians() {
+    return m_turnEncoder.getPosition();
+  }
+}
@@ -0,0 +1,125 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.swervedrivespecialties.swervelib.SdsModuleConfigurations;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.Constants;
+
+/**
+ * Swerve module IO for simulation.
+ * <p>
+ * The Falcon drive and NEO turn motors are DC motor models through the MK4i
+ * L2 gearing. Each loop is split into {@link Constants#SIM_SUBSTEPS} fixed
+ * steps, and the turn motor's position loop and drive motor's velocity loop
+ * run every step like the onboard PIDs would.
+ */
+public class SwerveModuleIOSim implements SwerveModuleIO {
+  private static final double WHEEL_RADIUS_METERS = SdsModuleConfigurations.MK4I_L2.getWheelDiameter() / 2.0;
+
+  private final double m_steerOffset;
+  private final DCMotorSim m_driveSim = new DCMotorSim(DCMotor.getFalcon500(1),
+      1.0 / SdsModuleConfigurations.MK4I_L2.getDriveReduction(), Constants.SIM_DRIVE_MOI_KG_METERS_SQUARED);
+  private final DCMotorSim m_turnSim = new DCMotorSim(DCMotor.getNEO(1),
+      1.0 / SdsModuleConfigurations.MK4I_L2.getSteerReduction(), Constants.SIM_TURN_MOI_KG_METERS_SQUARED);
+  private final PIDController m_turnController = new PIDController(Constants.SIM_TURN_KP, 0.0, Constants.SIM_TURN_KD);
+
+  private double m_driveOutput = 0.0;
+  private boolean m_driveClosedLoop = false;
+  private double m_driveVelocitySetpoint = 0.0;
+  private double m_driveFeedforwardVolts = 0.0;
+  private double m_turnVolts = 0.0;
+  // Turn encoder position is relative to where the module started, like the NEO's encoder
+  private double m_turnOffsetRad = 0.0;
+
+  /**
+   * Create a simulated swerve module
+   *
+   * @param steerOffset CANCoder steer offset in degrees, reported back so reseeding is a no-op
+   */
+  public SwerveModuleIOSim(double steerOffset) {
+    m_steerOffset = steerOffset;
+    m_turnController.enableContinuousInput(-Math.PI, Math.PI);
+  }
+
+  @Override
+  public void updateInputs(SwerveModuleIOInputs inputs) {
+    double stepSeconds = Constants.LOOP_PERIOD_SECONDS / Constants.SIM_SUBSTEPS;
+    for (int i = 0; i < Constants.SIM_SUBSTEPS; i++) {
+      m_turnVolts = MathUtil.clamp(m_turnController.calculate(getTurnAngleRad()),
+          -Constants.MAX_VOLTAGE, Constants.MAX_VOLTAGE);
+      m_turnSim.setInputVoltage(m_turnVolts);
+      if (m_driveClosedLoop) {
+        m_driveOutput = MathUtil.clamp((m_driveFeedforwardVolts + Constants.SIM_DRIVE_KP
+            * (m_driveVelocitySetpoint - getDriveVelocityMetersPerSec())) / Constants.MAX_VOLTAGE, -1.0, 1.0);
+      }
+      m_driveSim.setInputVoltage(m_driveOutput * Constants.MAX_VOLTAGE);
+      m_turnSim.update(stepSeconds);
+      m_driveSim.update(stepSeconds);
+    }
+
+    inputs.drivePositionMeters = readDrivePositionMeters();
+    inputs.driveVelocityMetersPerSec = getDriveVelocityMetersPerSec();
+    inputs.driveAppliedOutput = m_driveOutput;
+    inputs.driveCurrentAmps = Math.abs(m_driveSim.getCurrentDrawAmps());
+
+    inputs.turnPositionRad = readTurnPositionRadians();
+    inputs.turnAbsolutePositionDeg = Math.toDegrees(getTurnAngleRad()) + m_steerOffset;
+    inputs.turnAppliedOutput = m_turnVolts / Constants.MAX_VOLTAGE;
+    inputs.turnCurrentAmps = Math.abs(m_turnSim.getCurrentDrawAmps());
+  }
+
+  @Override
+  public void setDriveOutput(double percent) {
+    m_driveClosedLoop = false;
+    m_driveOutput = MathUtil.clamp(percent, -1.0, 1.0);
+  }
+
+  @Override
+  public void setDriveVelocity(double velocityMetersPerSec, double feedforwardVolts) {
+    m_driveClosedLoop = true;
+    m_driveVelocitySetpoint = velocityMetersPerSec;
+    m_driveFeedforwardVolts = feedforwardVolts;
+  }
+
+  @Override
+  public void setTurnPosition(double angleRadians) {
+    // Setpoint is in encoder coordinates
+    m_turnController.setSetpoint(MathUtil.angleModulus(angleRadians - m_turnOffsetRad));
+  }
+
+  @Override
+  public void resetTurnPosition(double angleRadians) {
+    m_turnOffsetRad = angleRadians - m_turnSim.getAngularPositionRad();
+  }
+
+  @Override
+  public double readDrivePositionMeters() {
+    return m_driveSim.getAngularPositionRad() * WHEEL_RADIUS_METERS;
+  }
+
+  @Override
+  public double readTurnPositionRadians() {
+    return m_turnSim.getAngularPositionRad() + m_turnOffsetRad;
+  }
+
+  /**
+   * @return Simulated wheel speed, for the simulated gyro
+   */
+  double getDriveVelocityMetersPerSec() {
+    return m_driveSim.getAngularVelocityRadPerSec() * WHEEL_RADIUS_METERS;
+  }
+
+  /**
+   * @return Simulated module angle, for the simulated gyro
+   */
+  double getTurnAngleRad() {
+    return MathUtil.angleModulus(m_turnSim.getAngularPositionRad());
+  }
+}
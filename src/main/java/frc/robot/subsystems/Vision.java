@@ -0,0 +1,114 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants;
+import frc.robot.utils.LoopProfiler;
+
+/**
+ * Fuses AprilTag pose estimates from the cameras into the drivetrain pose.
+ * <p>
+ * Estimates are rejected when a single tag is too ambiguous, the tags are too
+ * far away or the pose is off the field. The rest are added to the
+ * drivetrain's pose estimator at their capture time, which replays odometry
+ * from that point, with standard deviations that grow with the square of the
+ * tag distance and shrink with the number of tags.
+ */
+public class Vision extends SubsystemBase {
+  private final DriveSubsystem m_driveSubsystem;
+  private final AprilTagFieldLayout m_fieldLayout;
+  private final VisionIO[] m_ios;
+  private final VisionIOInputsAutoLogged[] m_inputs;
+  private final String[] m_logKeys;
+
+  private long m_acceptedCount = 0;
+  private long m_rejectedCount = 0;
+
+  private final int m_profilerId = LoopProfiler.registerPeriodic("Vision/Periodic");
+
+  /**
+   * Create the vision fusion on top of its camera IO
+   *
+   * @param driveSubsystem Drivetrain to fuse estimates into
+   * @param fieldLayout    AprilTag locations, for the field size
+   * @param leftIO         Left camera IO
+   * @param rightIO        Right camera IO
+   */
+  public Vision(DriveSubsystem driveSubsystem, AprilTagFieldLayout fieldLayout, VisionIO leftIO, VisionIO rightIO) {
+    m_driveSubsystem = driveSubsystem;
+    m_fieldLayout = fieldLayout;
+    m_ios = new VisionIO[] { leftIO, rightIO };
+    m_inputs = new VisionIOInputsAutoLogged[] { new VisionIOInputsAutoLogged(), new VisionIOInputsAutoLogged() };
+    m_logKeys = new String[] { "Vision/Left", "Vision/Right" };
+  }
+
+  /**
+   * Loads the AprilTag locations for this year's field
+   *
+   * @return Field layout with the origin on the blue alliance wall
+   */
+  public static AprilTagFieldLayout loadFieldLayout() {
+    try {
+      return AprilTagFieldLayout.loadFromResource(AprilTagFields.k2023ChargedUp.m_resourceFile);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to load the AprilTag field layout", e);
+    }
+  }
+
+  @Override
+  public void periodic() {
+    long start = LoopProfiler.start();
+    for (int camera = 0; camera < m_ios.length; camera++) {
+      VisionIOInputsAutoLogged inputs = m_inputs[camera];
+      m_ios[camera].updateInputs(inputs);
+      Logger.getInstance().processInputs(m_logKeys[camera], inputs);
+
+      for (int i = 0; i < inputs.timestamps.length; i++) {
+        double x = inputs.poses[i * 3];
+        double y = inputs.poses[i * 3 + 1];
+        double tagCount = inputs.tagCounts[i];
+        double distance = inputs.averageTagDistancesMeters[i];
+        if (!isValid(x, y, inputs.ambiguities[i], tagCount, distance)) {
+          m_rejectedCount++;
+          continue;
+        }
+
+        double distanceSquared = distance * distance;
+        double xyStdDev = Constants.VISION_XY_STD_DEV_METERS * distanceSquared / tagCount;
+        // A single tag's heading is much noisier than the gyro
+        double thetaStdDev = tagCount > 1
+            ? Constants.VISION_THETA_STD_DEV_RADIANS * distanceSquared / tagCount
+            : Double.POSITIVE_INFINITY;
+        m_driveSubsystem.addVisionMeasurement(new Pose2d(x, y, new Rotation2d(inputs.poses[i * 3 + 2])),
+            inputs.timestamps[i], xyStdDev, thetaStdDev);
+        m_acceptedCount++;
+      }
+    }
+
+    Logger.getInstance().recordOutput("Vision/AcceptedCount", m_acceptedCount);
+    Logger.getInstance().recordOutput("Vision/RejectedCount", m_rejectedCount);
+    LoopProfiler.stop(m_profilerId, start);
+  }
+
+  private boolean isValid(double x, double y, double ambiguity, double tagCount, double distance) {
+    if (tagCount == 1 && ambiguity > Constants.VISION_MAX_AMBIGUITY) {
+      return false;
+    }
+    if (distance > Constants.VISION_MAX_DISTANCE_METERS) {
+      return false;
+    }
+    return x >= 0.0 && x <= m_fieldLayout.getFieldLength() && y >= 0.0 && y <= m_fieldLayout.getFieldWidth();
+  }
+}
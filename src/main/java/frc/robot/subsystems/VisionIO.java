@@ -0,0 +1,32 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import org.littletonrobotics.junction.AutoLog;
+
+/**
+ * Hardware abstraction for one AprilTag camera.
+ * <p>
+ * Each loop the inputs hold every robot pose estimated from the camera since
+ * the last loop. The default methods report no estimates, which is used for
+ * replay.
+ */
+public interface VisionIO {
+  @AutoLog
+  public static class VisionIOInputs {
+    // Capture time of each estimate, in FPGA seconds
+    public double[] timestamps = new double[] {};
+    // Interleaved x, y and theta, estimate i is at [i * 3]
+    public double[] poses = new double[] {};
+    // Pose ambiguity of single tag estimates, 0 for multi tag estimates
+    public double[] ambiguities = new double[] {};
+    public double[] tagCounts = new double[] {};
+    public double[] averageTagDistancesMeters = new double[] {};
+  }
+
+  /** Updates the set of loggable inputs. */
+  public default void updateInputs(VisionIOInputs inputs) {
+  }
+}
@@ -0,0 +1,125 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.PhotonCamera;
+import org.photonvision.PhotonPoseEstimator;
+import org.photonvision.PhotonPoseEstimator.PoseStrategy;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.Notifier;
+import frc.robot.Constants;
+
+/**
+ * Vision IO for a PhotonVision camera, real or simulated.
+ * <p>
+ * A {@link Notifier} polls the camera off the main loop. Every new result
+ * with targets is turned into a robot pose by a {@link PhotonPoseEstimator},
+ * using every visible tag when there's more than one, and queued with its
+ * ambiguity, tag count and tag distance. The main thread drains the queue into
+ * the inputs, so filtering happens on logged data and replays the same way.
+ */
+public class VisionIOPhoton implements VisionIO {
+  private static final int CAPACITY = 16;
+
+  private final PhotonCamera m_camera;
+  private final PhotonPoseEstimator m_poseEstimator;
+  private final Notifier m_notifier;
+
+  // Estimates waiting for the main thread, guarded by this
+  private final double[] m_timestamps = new double[CAPACITY];
+  private final double[] m_poses = new double[CAPACITY * 3];
+  private final double[] m_ambiguities = new double[CAPACITY];
+  private final double[] m_tagCounts = new double[CAPACITY];
+  private final double[] m_distances = new double[CAPACITY];
+  private int m_count = 0;
+
+  // Only used by the notifier thread
+  private double m_lastTimestamp = -1.0;
+
+  /**
+   * Create a camera and start polling it
+   *
+   * @param cameraName    Camera name in PhotonVision
+   * @param robotToCamera Camera location on the robot
+   * @param fieldLayout   AprilTag locations
+   */
+  public VisionIOPhoton(String cameraName, Transform3d robotToCamera, AprilTagFieldLayout fieldLayout) {
+    m_camera = new PhotonCamera(cameraName);
+    m_poseEstimator = new PhotonPoseEstimator(fieldLayout, PoseStrategy.MULTI_TAG_PNP, m_camera, robotToCamera);
+    m_poseEstimator.setMultiTagFallbackStrategy(PoseStrategy.LOWEST_AMBIGUITY);
+
+    m_notifier = new Notifier(this::poll);
+    m_notifier.setName("Vision " + cameraName);
+    m_notifier.startPeriodic(1.0 / Constants.VISION_POLL_FREQUENCY_HZ);
+  }
+
+  /**
+   * @return The camera, for attaching a simulated camera
+   */
+  public PhotonCamera getCamera() {
+    return m_camera;
+  }
+
+  @Override
+  public synchronized void updateInputs(VisionIOInputs inputs) {
+    inputs.timestamps = new double[m_count];
+    inputs.poses = new double[m_count * 3];
+    inputs.ambiguities = new double[m_count];
+    inputs.tagCounts = new double[m_count];
+    inputs.averageTagDistancesMeters = new double[m_count];
+    System.arraycopy(m_timestamps, 0, inputs.timestamps, 0, m_count);
+    System.arraycopy(m_poses, 0, inputs.poses, 0, m_count * 3);
+    System.arraycopy(m_ambiguities, 0, inputs.ambiguities, 0, m_count);
+    System.arraycopy(m_tagCounts, 0, inputs.tagCounts, 0, m_count);
+    System.arraycopy(m_distances, 0, inputs.averageTagDistancesMeters, 0, m_count);
+    m_count = 0;
+  }
+
+  private void poll() {
+    PhotonPipelineResult result = m_camera.getLatestResult();
+    double timestamp = result.getTimestampSeconds();
+    if (timestamp == m_lastTimestamp || !result.hasTargets()) {
+      return;
+    }
+    m_lastTimestamp = timestamp;
+
+    Optional<EstimatedRobotPose> estimate = m_poseEstimator.update(result);
+    if (estimate.isEmpty()) {
+      return;
+    }
+
+    List<PhotonTrackedTarget> targets = result.getTargets();
+    double distanceSum = 0.0;
+    for (PhotonTrackedTarget target : targets) {
+      distanceSum += target.getBestCameraToTarget().getTranslation().getNorm();
+    }
+    double ambiguity = targets.size() == 1 ? targets.get(0).getPoseAmbiguity() : 0.0;
+    Pose2d pose = estimate.get().estimatedPose.toPose2d();
+
+    synchronized (this) {
+      // The main loop stalled, keep the oldest estimates
+      if (m_count == CAPACITY) {
+        return;
+      }
+      m_timestamps[m_count] = estimate.get().timestampSeconds;
+      m_poses[m_count * 3] = pose.getX();
+      m_poses[m_count * 3 + 1] = pose.getY();
+      m_poses[m_count * 3 + 2] = pose.getRotation().getRadians();
+      m_ambiguities[m_count] = ambiguity;
+      m_tagCounts[m_count] = targets.size();
+      m_distances[m_count] = distanceSum / targets.size();
+      m_count++;
+    }
+  }
+}
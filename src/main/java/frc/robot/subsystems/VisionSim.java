@@ -0,0 +1,61 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.SimCameraProperties;
+import org.photonvision.simulation.VisionSystemSim;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import frc.robot.Constants;
+
+/**
+ * Simulated AprilTag cameras.
+ * <p>
+ * PhotonLib renders the field tags from the robot's pose every loop and
+ * publishes the results as if they came from a coprocessor, so the real
+ * {@link VisionIOPhoton} code runs unchanged, including headless.
+ */
+public class VisionSim {
+  private final VisionSystemSim m_visionSystem = new VisionSystemSim("Vision");
+
+  /**
+   * Create a simulated vision system
+   *
+   * @param fieldLayout AprilTag locations
+   */
+  public VisionSim(AprilTagFieldLayout fieldLayout) {
+    m_visionSystem.addAprilTags(fieldLayout);
+  }
+
+  /**
+   * Simulates a camera
+   *
+   * @param camera        Camera IO to feed
+   * @param robotToCamera Camera location on the robot
+   */
+  public void addCamera(VisionIOPhoton camera, Transform3d robotToCamera) {
+    SimCameraProperties properties = new SimCameraProperties();
+    properties.setCalibration(Constants.SIM_CAMERA_WIDTH_PIXELS, Constants.SIM_CAMERA_HEIGHT_PIXELS,
+        Rotation2d.fromDegrees(Constants.SIM_CAMERA_DIAGONAL_FOV_DEGREES));
+    properties.setCalibError(Constants.SIM_CAMERA_ERROR_PIXELS, Constants.SIM_CAMERA_ERROR_STD_DEV_PIXELS);
+    properties.setFPS(Constants.SIM_CAMERA_FPS);
+    properties.setAvgLatencyMs(Constants.SIM_CAMERA_LATENCY_MS);
+    properties.setLatencyStdDevMs(Constants.SIM_CAMERA_LATENCY_STD_DEV_MS);
+    m_visionSystem.addCamera(new PhotonCameraSim(camera.getCamera(), properties), robotToCamera);
+  }
+
+  /**
+   * Renders the camera results for a robot pose, call once per loop.
+   *
+   * @param robotPose Simulated robot pose
+   */
+  public void update(Pose2d robotPose) {
+    m_visionSystem.update(robotPose);
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+
+/**
+ * Coalesces the writes to one motor controller output.
+ * <p>
+ * IO layers ask {@link #shouldWrite(int, double, double)} before sending a
+ * setpoint. A write is only needed when the control mode changes, the value
+ * or its auxiliary value (for example an arbitrary feedforward) moves by more
+ * than the threshold, or the last write is older than
+ * {@link Constants#ACTUATOR_REFRESH_SECONDS}. Writes and skips per second of
+ * every output are logged once a second by {@link #periodic()}.
+ */
+public class ActuatorOutput {
+  private static final double REPORT_PERIOD_SECONDS = 1.0;
+
+  private static final List<ActuatorOutput> s_outputs = new ArrayList<>();
+  private static double s_reportStartSeconds = Double.NaN;
+
+  private final double m_threshold;
+  private final String m_writesKey;
+  private final String m_skipsKey;
+
+  private int m_mode = -1;
+  private double m_value = Double.NaN;
+  private double m_aux = Double.NaN;
+  private double m_lastWriteSeconds = Double.NEGATIVE_INFINITY;
+  private int m_writes = 0;
+  private int m_skips = 0;
+
+  /**
+   * Create a coalesced output
+   *
+   * @param name      Device name used in the log keys, for example "Talon 5"
+   * @param threshold Smallest change in value worth sending
+   */
+  public ActuatorOutput(String name, double threshold) {
+    m_threshold = threshold;
+    m_writesKey = "Actuators/" + name + "/WritesPerSecond";
+    m_skipsKey = "Actuators/" + name + "/SkipsPerSecond";
+    synchronized (s_outputs) {
+      s_outputs.add(this);
+    }
+  }
+
+  /**
+   * Checks whether a setpoint needs to be sent, and records it as sent if so.
+   *
+   * @param mode  Control mode, for example the ordinal of the mode enum
+   * @param value Setpoint
+   * @param aux   Auxiliary value sent with the setpoint, 0 if there is none
+   * @return Whether to send the setpoint to the device
+   */
+  public boolean shouldWrite(int mode, double value, double aux) {
+    double now = Timer.getFPGATimestamp();
+    if (mode == m_mode
+        && Math.abs(value - m_value) <= m_threshold
+        && Math.abs(aux - m_aux) <= m_threshold
+        && now - m_lastWriteSeconds < Constants.ACTUATOR_REFRESH_SECONDS) {
+      m_skips++;
+      return false;
+    }
+
+    m_mode = mode;
+    m_value = value;
+    m_aux = aux;
+    m_lastWriteSeconds = now;
+    m_writes++;
+    return true;
+  }
+
+  /**
+   * Checks whether a setpoint needs to be sent, and records it as sent if so.
+   *
+   * @param mode  Control mode, for example the ordinal of the mode enum
+   * @param value Setpoint
+   * @return Whether to send the setpoint to the device
+   */
+  public boolean shouldWrite(int mode, double value) {
+    return shouldWrite(mode, value, 0.0);
+  }
+
+  /** Forces the next setpoint to be sent, for example after the device was reset. */
+  public void invalidate() {
+    m_mode = -1;
+  }
+
+  /** Logs the write and skip rates of every output once a second, call once per loop. */
+  public static void periodic() {
+    double now = Timer.getFPGATimestamp();
+    if (Double.isNaN(s_reportStartSeconds)) {
+      s_reportStartSeconds = now;
+      return;
+    }
+    double elapsed = now - s_reportStartSeconds;
+    if (elapsed < REPORT_PERIOD_SECONDS) {
+      return;
+    }
+
+    s_reportStartSeconds = now;
+    synchronized (s_outputs) {
+      for (int i = 0; i < s_outputs.size(); i++) {
+        ActuatorOutput output = s_outputs.get(i);
+        Logger.getInstance().recordOutput(output.m_writesKey, output.m_writes / elapsed);
+        Logger.getInstance().recordOutput(output.m_skipsKey, output.m_skips / elapsed);
+        output.m_writes = 0;
+        output.m_skips = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * A persistent fault shown on the dashboard for as long as it's active.
+ * <p>
+ * Active alerts are published under "Alerts" in the "Alerts" widget format
+ * AdvantageScope and Shuffleboard understand, and reported to the driver
+ * station once when they become active. Use for faults the drive team has to
+ * see, not for messages that go by in the console.
+ */
+public class Alert {
+  /** How serious an alert is. */
+  public enum AlertType {
+    ERROR,
+    WARNING,
+    INFO
+  }
+
+  private static final List<Alert> s_alerts = new ArrayList<>();
+  private static boolean s_published = false;
+
+  private final AlertType m_type;
+  private final String m_text;
+  private boolean m_active = false;
+
+  /**
+   * Create an inactive alert
+   *
+   * @param text Text shown while the alert is active
+   * @param type How serious the alert is
+   */
+  public Alert(String text, AlertType type) {
+    m_text = text;
+    m_type = type;
+    synchronized (s_alerts) {
+      s_alerts.add(this);
+      if (!s_published) {
+        s_published = true;
+        SmartDashboard.putData("Alerts", new AlertsSendable());
+      }
+    }
+  }
+
+  /**
+   * Shows or hides the alert, it's reported to the driver station when it
+   * becomes active
+   *
+   * @param active Whether the alert is active
+   */
+  public void set(boolean active) {
+    set(active, null);
+  }
+
+  /**
+   * Shows or hides the alert, it's reported to the driver station with a
+   * stack trace when it becomes active
+   *
+   * @param active     Whether the alert is active
+   * @param stackTrace Stack trace of the exception behind the alert, or null
+   */
+  public void set(boolean active, StackTraceElement[] stackTrace) {
+    if (active && !m_active) {
+      switch (m_type) {
+        case ERROR:
+          if (stackTrace != null) {
+            DriverStation.reportError(m_text, stackTrace);
+          } else {
+            DriverStation.reportError(m_text, false);
+          }
+          break;
+        case WARNING:
+          if (stackTrace != null) {
+            DriverStation.reportWarning(m_text, stackTrace);
+          } else {
+            DriverStation.reportWarning(m_text, false);
+          }
+          break;
+        case INFO:
+          System.out.println(m_text);
+          break;
+      }
+    }
+    m_active = active;
+  }
+
+  /**
+   * @return Whether the alert is active
+   */
+  public boolean isActive() {
+    return m_active;
+  }
+
+  private static String[] getActiveTexts(AlertType type) {
+    List<String> texts = new ArrayList<>();
+    synchronized (s_alerts) {
+      for (Alert alert : s_alerts) {
+        if (alert.m_type == type && alert.m_active) {
+          texts.add(alert.m_text);
+        }
+      }
+    }
+    return texts.toArray(new String[0]);
+  }
+
+  private static class AlertsSendable implements Sendable {
+    @Override
+    public void initSendable(SendableBuilder builder) {
+      builder.setSmartDashboardType("Alerts");
+      builder.addStringArrayProperty("errors", () -> getActiveTexts(AlertType.ERROR), null);
+      builder.addStringArrayProperty("warnings", () -> getActiveTexts(AlertType.WARNING), null);
+      builder.addStringArrayProperty("infos", () -> getActiveTexts(AlertType.INFO), null);
+    }
+  }
+}
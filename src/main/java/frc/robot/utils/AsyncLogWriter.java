@@ -0,0 +1,116 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+
+/**
+ * Log data receiver that writes through a bounded queue on its own thread.
+ * <p>
+ * AdvantageKit already runs its receivers on a receiver thread rather than the
+ * main loop, but every receiver shares that thread, so a slow USB stick would
+ * hold up the NetworkTables publisher too. Tables are queued here without
+ * copying and written on a separate thread. When the queue is full the
+ * receiver thread waits for space instead of dropping the table, since every
+ * cycle's inputs are needed for replay to be deterministic, and the wait is
+ * counted.
+ */
+public class AsyncLogWriter implements LogDataReceiver {
+  private static final long POLL_MILLIS = 100;
+  private static final long JOIN_MILLIS = 2000;
+
+  private final LogDataReceiver m_writer;
+  private final BlockingQueue<LogTable> m_queue;
+  private final AtomicLong m_stalled = new AtomicLong();
+  private final AtomicLong m_written = new AtomicLong();
+  private final Thread m_thread;
+
+  private volatile boolean m_running = false;
+
+  /**
+   * Create an asynchronous log writer
+   *
+   * @param writer   Receiver that does the writing, usually a WPILOGWriter
+   * @param capacity Number of cycles that can be waiting to be written
+   */
+  public AsyncLogWriter(LogDataReceiver writer, int capacity) {
+    m_writer = writer;
+    m_queue = new ArrayBlockingQueue<>(capacity);
+    m_thread = new Thread(this::run, "AsyncLogWriter");
+    m_thread.setDaemon(true);
+  }
+
+  /**
+   * @return Number of cycles waiting to be written
+   */
+  public int getQueueDepth() {
+    return m_queue.size();
+  }
+
+  /**
+   * @return Number of cycles that had to wait for space in the queue
+   */
+  public long getStalledCount() {
+    return m_stalled.get();
+  }
+
+  /**
+   * @return Number of cycles written
+   */
+  public long getWrittenCount() {
+    return m_written.get();
+  }
+
+  @Override
+  public void start() {
+    m_writer.start();
+    m_running = true;
+    m_thread.start();
+  }
+
+  @Override
+  public void end() {
+    m_running = false;
+    try {
+      m_thread.join(JOIN_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    m_writer.end();
+  }
+
+  @Override
+  public void putTable(LogTable table) {
+    if (m_queue.offer(table)) {
+      return;
+    }
+    m_stalled.incrementAndGet();
+    try {
+      m_queue.put(table);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    try {
+      while (m_running || !m_queue.isEmpty()) {
+        LogTable table = m_queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (table != null) {
+          m_writer.putTable(table);
+          m_written.incrementAndGet();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the periodic status frames every CAN device is configured to
+ * send and estimates the bus load they cause.
+ * <p>
+ * The estimate assumes a worst case extended CAN frame with 8 data bytes and
+ * bit stuffing on the 1 Mbit/s roboRIO bus. It only covers periodic status
+ * traffic, not control frames or configuration.
+ */
+public final class CANBusLoad {
+  private static final double BUS_BITS_PER_SECOND = 1_000_000.0;
+  private static final double BITS_PER_FRAME = 160.0;
+
+  // Device name to frame name to period in ms
+  private static final Map<String, Map<String, Integer>> s_devices = new LinkedHashMap<>();
+
+  private CANBusLoad() {
+  }
+
+  /**
+   * Records the period a device sends a status frame at, replacing any
+   * previous period for that frame. A period of 0 means the frame is disabled.
+   *
+   * @param device   Device name, for example "Talon 5"
+   * @param frame    Frame name
+   * @param periodMs Frame period in milliseconds
+   */
+  public static synchronized void setFramePeriod(String device, String frame, int periodMs) {
+    s_devices.computeIfAbsent(device, key -> new LinkedHashMap<>()).put(frame, periodMs);
+  }
+
+  /**
+   * Records a set of frame periods for a device.
+   *
+   * @param device       Device name
+   * @param framePeriods Frame to period in milliseconds
+   */
+  public static synchronized void setFramePeriods(String device, Map<? extends Enum<?>, Integer> framePeriods) {
+    for (Map.Entry<? extends Enum<?>, Integer> entry : framePeriods.entrySet()) {
+      setFramePeriod(device, entry.getKey().name(), entry.getValue());
+    }
+  }
+
+  /**
+   * @param device Device name
+   * @return Status frames per second sent by the device
+   */
+  public static synchronized double getFramesPerSecond(String device) {
+    Map<String, Integer> frames = s_devices.get(device);
+    if (frames == null) {
+      return 0.0;
+    }
+    double framesPerSecond = 0.0;
+    for (int periodMs : frames.values()) {
+      if (periodMs > 0) {
+        framesPerSecond += 1000.0 / periodMs;
+      }
+    }
+    return framesPerSecond;
+  }
+
+  /**
+   * @return Estimated bus utilization from status frames [0.0, 1.0+]
+   */
+  public static synchronized double getEstimatedLoad() {
+    double framesPerSecond = 0.0;
+    for (String device : s_devices.keySet()) {
+      framesPerSecond += getFramesPerSecond(device);
+    }
+    return framesPerSecond * BITS_PER_FRAME / BUS_BITS_PER_SECOND;
+  }
+
+  /**
+   * @return Human readable per-device report of status frame rates and estimated load
+   */
+  public static synchronized String getReport() {
+    StringBuilder report = new StringBuilder("CAN status frame load estimate\n");
+    for (Map.Entry<String, Map<String, Integer>> device : s_devices.entrySet()) {
+      double framesPerSecond = getFramesPerSecond(device.getKey());
+      report.append(String.format("  %-16s %7.1f frames/s %5.1f%%  %s%n",
+          device.getKey(),
+          framesPerSecond,
+          framesPerSecond * BITS_PER_FRAME / BUS_BITS_PER_SECOND * 100.0,
+          device.getValue()));
+    }
+    report.append(String.format("  Total %.1f%%", getEstimatedLoad() * 100.0));
+    return report.toString();
+  }
+}
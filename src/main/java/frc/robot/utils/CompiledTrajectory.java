@@ -0,0 +1,314 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.EventMarker;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent.ExecutionBehavior;
+import com.pathplanner.lib.PathPlannerTrajectory.StopEvent.WaitBehavior;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.Constants;
+
+/**
+ * Binary PathPlanner trajectories generated at build time.
+ * <p>
+ * The {@code compileTrajectories} Gradle task runs {@link #main(String[])} to
+ * generate every {@code .path} file once on the build machine and write the
+ * result as a little endian file:
+ * <ul>
+ * <li>a 40 byte header: magic, version, max velocity, max acceleration,
+ * flags, state count and marker count</li>
+ * <li>{@value #DOUBLES_PER_STATE} packed doubles per state</li>
+ * <li>event markers and the start and end stop events</li>
+ * </ul>
+ * The robot memory maps the file and copies the states straight out of the
+ * mapping, so there is no JSON parsing or spline generation on the roboRIO.
+ */
+public final class CompiledTrajectory {
+  public static final String EXTENSION = ".traj";
+  public static final String DIRECTORY = "pathplanner/compiled";
+
+  private static final int MAGIC = 0x4A415254; // "TRAJ"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 40;
+  private static final int DOUBLES_PER_STATE = 10;
+  private static final int FLAG_REVERSED = 1;
+  private static final int FLAG_FROM_GUI = 2;
+  // Constraints match if they're within this of the compiled ones
+  private static final double CONSTRAINT_TOLERANCE = 1e-9;
+
+  private CompiledTrajectory() {
+  }
+
+  /**
+   * Loads a compiled trajectory from the deploy directory
+   *
+   * @param pathName                           Name of the path, without extension
+   * @param maxSpeedMetersPerSec               Velocity constraint the path is needed with
+   * @param maxAccelerationMetersPerSecSquared Acceleration constraint the path is needed with
+   * @return The trajectory, or empty if there is no compiled file for those constraints or it was
+   *         compiled reversed
+   */
+  public static Optional<PathPlannerTrajectory> load(String pathName, double maxSpeedMetersPerSec,
+      double maxAccelerationMetersPerSecSquared) {
+    File file = getFile(Filesystem.getDeployDirectory(), pathName);
+    if (!file.isFile()) {
+      return Optional.empty();
+    }
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      // Paths are always followed as drawn, like PathPlanner.loadPath without the reversed flag
+      return read(mapped.order(ByteOrder.LITTLE_ENDIAN), maxSpeedMetersPerSec, maxAccelerationMetersPerSecSquared,
+          false);
+    } catch (IOException | RuntimeException e) {
+      Diagnostics.warn("failed to load compiled trajectory, falling back to the path file");
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Loads a compiled trajectory, generating it from the path file if it
+   * wasn't compiled with the requested constraints
+   *
+   * @param pathName                           Name of the path, without extension
+   * @param maxSpeedMetersPerSec               Max velocity
+   * @param maxAccelerationMetersPerSecSquared Max acceleration
+   * @return The trajectory
+   */
+  public static PathPlannerTrajectory loadOrGenerate(String pathName, double maxSpeedMetersPerSec,
+      double maxAccelerationMetersPerSecSquared) {
+    return load(pathName, maxSpeedMetersPerSec, maxAccelerationMetersPerSecSquared)
+        .orElseGet(() -> PathPlanner.loadPath(pathName, maxSpeedMetersPerSec, maxAccelerationMetersPerSecSquared));
+  }
+
+  private static Optional<PathPlannerTrajectory> read(ByteBuffer buffer, double maxSpeedMetersPerSec,
+      double maxAccelerationMetersPerSecSquared, boolean reversed) {
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      return Optional.empty();
+    }
+    double maxVelocity = buffer.getDouble();
+    double maxAcceleration = buffer.getDouble();
+    if (Math.abs(maxVelocity - maxSpeedMetersPerSec) > CONSTRAINT_TOLERANCE
+        || Math.abs(maxAcceleration - maxAccelerationMetersPerSecSquared) > CONSTRAINT_TOLERANCE) {
+      return Optional.empty();
+    }
+    int flags = buffer.getInt();
+    if (((flags & FLAG_REVERSED) != 0) != reversed) {
+      return Optional.empty();
+    }
+    int stateCount = buffer.getInt();
+    int markerCount = buffer.getInt();
+    buffer.position(HEADER_BYTES);
+
+    // Bulk copy the packed states out of the mapping
+    double[] packed = new double[stateCount * DOUBLES_PER_STATE];
+    DoubleBuffer doubles = buffer.asDoubleBuffer();
+    doubles.get(packed);
+    buffer.position(HEADER_BYTES + packed.length * Double.BYTES);
+
+    List<Trajectory.State> states = new ArrayList<>(stateCount);
+    for (int i = 0; i < stateCount; i++) {
+      int offset = i * DOUBLES_PER_STATE;
+      PathPlannerState state = new PathPlannerState();
+      state.timeSeconds = packed[offset];
+      state.velocityMetersPerSecond = packed[offset + 1];
+      state.accelerationMetersPerSecondSq = packed[offset + 2];
+      state.poseMeters = new Pose2d(packed[offset + 3], packed[offset + 4], new Rotation2d(packed[offset + 5]));
+      state.curvatureRadPerMeter = packed[offset + 6];
+      state.angularVelocityRadPerSec = packed[offset + 7];
+      state.holonomicRotation = new Rotation2d(packed[offset + 8]);
+      state.holonomicAngularVelocityRadPerSec = packed[offset + 9];
+      states.add(state);
+    }
+
+    List<EventMarker> markers = new ArrayList<>(markerCount);
+    for (int i = 0; i < markerCount; i++) {
+      double timeSeconds = buffer.getDouble();
+      double x = buffer.getDouble();
+      double y = buffer.getDouble();
+      double waypointRelativePos = buffer.getDouble();
+      EventMarker marker = new EventMarker(readStrings(buffer), waypointRelativePos);
+      marker.timeSeconds = timeSeconds;
+      marker.positionMeters = new Translation2d(x, y);
+      markers.add(marker);
+    }
+
+    StopEvent startStopEvent = readStopEvent(buffer);
+    StopEvent endStopEvent = readStopEvent(buffer);
+
+    return Optional.of(new PathPlannerTrajectory(states, markers, startStopEvent, endStopEvent,
+        (flags & FLAG_FROM_GUI) != 0));
+  }
+
+  /**
+   * Writes a trajectory in the compiled format
+   *
+   * @param trajectory                         Trajectory to write
+   * @param maxSpeedMetersPerSec               Velocity constraint it was generated with
+   * @param maxAccelerationMetersPerSecSquared Acceleration constraint it was generated with
+   * @param reversed                           Whether it was generated reversed
+   * @param file                               File to write
+   * @throws IOException If the file can't be written
+   */
+  public static void write(PathPlannerTrajectory trajectory, double maxSpeedMetersPerSec,
+      double maxAccelerationMetersPerSecSquared, boolean reversed, Path file) throws IOException {
+    List<Trajectory.State> states = trajectory.getStates();
+    List<EventMarker> markers = trajectory.getMarkers();
+
+    int size = HEADER_BYTES + states.size() * DOUBLES_PER_STATE * Double.BYTES;
+    for (EventMarker marker : markers) {
+      size += 4 * Double.BYTES + stringsSize(marker.names);
+    }
+    size += stopEventSize(trajectory.getStartStopEvent()) + stopEventSize(trajectory.getEndStopEvent());
+
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putDouble(maxSpeedMetersPerSec);
+    buffer.putDouble(maxAccelerationMetersPerSecSquared);
+    buffer.putInt((reversed ? FLAG_REVERSED : 0) | (trajectory.fromGUI ? FLAG_FROM_GUI : 0));
+    buffer.putInt(states.size());
+    buffer.putInt(markers.size());
+    buffer.putInt(0);
+
+    for (Trajectory.State state : states) {
+      PathPlannerState pathState = (PathPlannerState) state;
+      buffer.putDouble(pathState.timeSeconds);
+      buffer.putDouble(pathState.velocityMetersPerSecond);
+      buffer.putDouble(pathState.accelerationMetersPerSecondSq);
+      buffer.putDouble(pathState.poseMeters.getX());
+      buffer.putDouble(pathState.poseMeters.getY());
+      buffer.putDouble(pathState.poseMeters.getRotation().getRadians());
+      buffer.putDouble(pathState.curvatureRadPerMeter);
+      buffer.putDouble(pathState.angularVelocityRadPerSec);
+      buffer.putDouble(pathState.holonomicRotation.getRadians());
+      buffer.putDouble(pathState.holonomicAngularVelocityRadPerSec);
+    }
+
+    for (EventMarker marker : markers) {
+      buffer.putDouble(marker.timeSeconds);
+      buffer.putDouble(marker.positionMeters.getX());
+      buffer.putDouble(marker.positionMeters.getY());
+      buffer.putDouble(marker.waypointRelativePos);
+      writeStrings(buffer, marker.names);
+    }
+
+    writeStopEvent(buffer, trajectory.getStartStopEvent());
+    writeStopEvent(buffer, trajectory.getEndStopEvent());
+
+    Files.createDirectories(file.getParent());
+    Files.write(file, buffer.array());
+  }
+
+  /**
+   * @param deployDirectory Deploy directory
+   * @param pathName        Name of the path, without extension
+   * @return Location of the compiled trajectory
+   */
+  public static File getFile(File deployDirectory, String pathName) {
+    return new File(new File(deployDirectory, DIRECTORY), pathName + EXTENSION);
+  }
+
+  /**
+   * Compiles every path in the deploy directory, run by the
+   * {@code compileTrajectories} Gradle task from the project directory.
+   * Paths are generated with the auto constraints in {@link Constants}.
+   *
+   * @param args Unused
+   * @throws IOException If a compiled file can't be written
+   */
+  public static void main(String[] args) throws IOException {
+    File deployDirectory = Filesystem.getDeployDirectory();
+    File[] pathFiles = new File(deployDirectory, "pathplanner").listFiles((dir, name) -> name.endsWith(".path"));
+    if (pathFiles == null) {
+      return;
+    }
+
+    for (File pathFile : pathFiles) {
+      String pathName = pathFile.getName().substring(0, pathFile.getName().length() - ".path".length());
+      PathPlannerTrajectory trajectory = PathPlanner.loadPath(pathName,
+          Constants.AUTO_MAX_VELOCITY_METERS_PER_SECOND,
+          Constants.AUTO_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED);
+      Path output = getFile(deployDirectory, pathName).toPath();
+      write(trajectory,
+          Constants.AUTO_MAX_VELOCITY_METERS_PER_SECOND,
+          Constants.AUTO_MAX_ACCELERATION_METERS_PER_SECOND_SQUARED,
+          false,
+          output);
+      System.out.printf("%s: %d bytes -> %d bytes%n", pathName, pathFile.length(), Files.size(output));
+    }
+  }
+
+  private static int stringsSize(List<String> strings) {
+    int size = Integer.BYTES;
+    for (String string : strings) {
+      size += Integer.BYTES + string.getBytes(StandardCharsets.UTF_8).length;
+    }
+    return size;
+  }
+
+  private static void writeStrings(ByteBuffer buffer, List<String> strings) {
+    buffer.putInt(strings.size());
+    for (String string : strings) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      buffer.putInt(bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  private static List<String> readStrings(ByteBuffer buffer) {
+    int count = buffer.getInt();
+    List<String> strings = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      strings.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+    return strings;
+  }
+
+  private static int stopEventSize(StopEvent stopEvent) {
+    return stringsSize(stopEvent.names) + 2 * Integer.BYTES + Double.BYTES;
+  }
+
+  private static void writeStopEvent(ByteBuffer buffer, StopEvent stopEvent) {
+    writeStrings(buffer, stopEvent.names);
+    buffer.putInt(stopEvent.executionBehavior.ordinal());
+    buffer.putInt(stopEvent.waitBehavior.ordinal());
+    buffer.putDouble(stopEvent.waitTime);
+  }
+
+  private static StopEvent readStopEvent(ByteBuffer buffer) {
+    List<String> names = readStrings(buffer);
+    ExecutionBehavior executionBehavior = ExecutionBehavior.values()[buffer.getInt()];
+    WaitBehavior waitBehavior = WaitBehavior.values()[buffer.getInt()];
+    double waitTime = buffer.getDouble();
+    return new StopEvent(names, executionBehavior, waitBehavior, waitTime);
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Keeps track of which configuration each motor controller was last fully
+ * configured with, and how long configuring took.
+ * <p>
+ * A configuration is identified by a fingerprint of its settings. The
+ * fingerprints are saved in a file on the roboRIO so a reboot with the same
+ * settings can skip factory resets and flash writes.
+ */
+public final class DeviceConfigs {
+  private static final String FILE_NAME = "device-config-fingerprints.properties";
+
+  private static final Map<String, String> s_timings = new LinkedHashMap<>();
+  private static Properties s_fingerprints = null;
+  private static double s_totalMillis = 0.0;
+
+  private DeviceConfigs() {
+  }
+
+  /**
+   * @param device      Device name
+   * @param fingerprint Fingerprint of the configuration
+   * @return Whether the device was last fully configured with this configuration
+   */
+  public static synchronized boolean isApplied(String device, int fingerprint) {
+    return Integer.toString(fingerprint).equals(getFingerprints().getProperty(device));
+  }
+
+  /**
+   * Saves the configuration a device was fully configured with
+   *
+   * @param device      Device name
+   * @param fingerprint Fingerprint of the configuration
+   */
+  public static synchronized void setApplied(String device, int fingerprint) {
+    getFingerprints().setProperty(device, Integer.toString(fingerprint));
+    try (OutputStream output = new FileOutputStream(getFile())) {
+      s_fingerprints.store(output, "Motor controller configuration fingerprints");
+    } catch (IOException e) {
+      System.out.println("[WARN] couldn't save device config fingerprints: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Records how configuring a device went
+   *
+   * @param device     Device name
+   * @param startNanos {@link System#nanoTime()} when configuring started
+   * @param writes     Number of settings written, only reported if not full
+   * @param failures   Number of writes that failed
+   * @param full       Whether the device was factory reset and fully configured
+   */
+  public static synchronized void record(String device, long startNanos, int writes, int failures, boolean full) {
+    double millis = (System.nanoTime() - startNanos) / 1e6;
+    s_totalMillis += millis;
+    s_timings.put(device, String.format("%7.1f ms  %s%s", millis, full ? "factory reset" : writes + " writes",
+        failures > 0 ? ", " + failures + " FAILED" : ""));
+  }
+
+  /**
+   * @return Human readable per-device configuration time report
+   */
+  public static synchronized String getReport() {
+    StringBuilder report = new StringBuilder("Motor controller configuration\n");
+    for (Map.Entry<String, String> device : s_timings.entrySet()) {
+      report.append(String.format("  %-16s %s%n", device.getKey(), device.getValue()));
+    }
+    report.append(String.format("  Total %.1f ms", s_totalMillis));
+    return report.toString();
+  }
+
+  private static Properties getFingerprints() {
+    if (s_fingerprints == null) {
+      s_fingerprints = new Properties();
+      File file = getFile();
+      if (file.isFile()) {
+        try (InputStream input = new FileInputStream(file)) {
+          s_fingerprints.load(input);
+        } catch (IOException e) {
+          System.out.println("[WARN] couldn't read device config fingerprints: " + e.getMessage());
+        }
+      }
+    }
+    return s_fingerprints;
+  }
+
+  private static File getFile() {
+    return new File(Filesystem.getOperatingDirectory(), FILE_NAME);
+  }
+}
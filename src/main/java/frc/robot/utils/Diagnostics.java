@@ -0,0 +1,271 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-blocking diagnostics channel for control loops.
+ * <p>
+ * Callers push a constant format string and up to three primitive arguments
+ * into a preallocated, bounded ring buffer. A background thread drains the
+ * buffer, formats the messages and writes them to the console, so string
+ * building and console I/O never happen on the robot thread. When the buffer
+ * is full, or a level is over its rate limit, messages are counted and
+ * dropped instead of blocking.
+ */
+public final class Diagnostics {
+  /** Message severity, each level has its own rate limit. */
+  public enum Level {
+    DEBUG, INFO, WARN, ERROR
+  }
+
+  private static final int CAPACITY = 1024; // Must be a power of two
+  private static final int MASK = CAPACITY - 1;
+  private static final int MAX_ARGS = 3;
+  private static final long IDLE_PARK_NANOS = 5_000_000;
+  private static final long DROP_REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+  private static final Level[] LEVELS = Level.values();
+
+  // Preallocated message slots
+  private static final long[] s_timestamps = new long[CAPACITY];
+  private static final Level[] s_levels = new Level[CAPACITY];
+  private static final String[] s_formats = new String[CAPACITY];
+  private static final int[] s_argCounts = new int[CAPACITY];
+  private static final double[] s_args = new double[CAPACITY * MAX_ARGS];
+
+  // Vyukov style bounded MPSC sequencing, a slot is writable when its sequence equals the claim index
+  private static final AtomicLongArray s_sequences = new AtomicLongArray(CAPACITY);
+  private static final AtomicLong s_tail = new AtomicLong();
+  private static long s_head = 0;
+
+  // Rate limiting, minimum time between accepted messages per level
+  private static final long[] s_minIntervalNanos = new long[LEVELS.length];
+  private static final AtomicLongArray s_lastAcceptedNanos = new AtomicLongArray(LEVELS.length);
+
+  private static final AtomicLong s_dropped = new AtomicLong();
+  private static final AtomicLong s_rateLimited = new AtomicLong();
+  private static final AtomicLong s_written = new AtomicLong();
+
+  // Only touched by the drain thread
+  private static final Object[][] s_formatArgs = {
+      new Object[0], new Object[1], new Object[2], new Object[3]
+  };
+
+  static {
+    for (int i = 0; i < CAPACITY; i++) {
+      s_sequences.set(i, i);
+    }
+    setRateLimit(Level.DEBUG, 0.1);
+    setRateLimit(Level.INFO, 0.02);
+    setRateLimit(Level.WARN, 0.0);
+    setRateLimit(Level.ERROR, 0.0);
+    for (int i = 0; i < LEVELS.length; i++) {
+      s_lastAcceptedNanos.set(i, Long.MIN_VALUE / 2);
+    }
+
+    Thread drainThread = new Thread(Diagnostics::drainLoop, "Diagnostics");
+    drainThread.setDaemon(true);
+    drainThread.setPriority(Thread.MIN_PRIORITY);
+    drainThread.start();
+  }
+
+  private Diagnostics() {
+  }
+
+  /**
+   * Sets the minimum time between accepted messages of a level.
+   *
+   * @param level          Level to limit
+   * @param periodSeconds  Minimum period in seconds, 0 disables the limit
+   */
+  public static void setRateLimit(Level level, double periodSeconds) {
+    s_minIntervalNanos[level.ordinal()] = (long) (Math.max(periodSeconds, 0.0) * 1e9);
+  }
+
+  public static void debug(String format) {
+    log(Level.DEBUG, format, 0, 0.0, 0.0, 0.0);
+  }
+
+  public static void debug(String format, double a) {
+    log(Level.DEBUG, format, 1, a, 0.0, 0.0);
+  }
+
+  public static void debug(String format, double a, double b) {
+    log(Level.DEBUG, format, 2, a, b, 0.0);
+  }
+
+  public static void debug(String format, double a, double b, double c) {
+    log(Level.DEBUG, format, 3, a, b, c);
+  }
+
+  public static void info(String format) {
+    log(Level.INFO, format, 0, 0.0, 0.0, 0.0);
+  }
+
+  public static void info(String format, double a) {
+    log(Level.INFO, format, 1, a, 0.0, 0.0);
+  }
+
+  public static void info(String format, double a, double b) {
+    log(Level.INFO, format, 2, a, b, 0.0);
+  }
+
+  public static void info(String format, double a, double b, double c) {
+    log(Level.INFO, format, 3, a, b, c);
+  }
+
+  public static void warn(String format) {
+    log(Level.WARN, format, 0, 0.0, 0.0, 0.0);
+  }
+
+  public static void warn(String format, double a) {
+    log(Level.WARN, format, 1, a, 0.0, 0.0);
+  }
+
+  public static void warn(String format, double a, double b) {
+    log(Level.WARN, format, 2, a, b, 0.0);
+  }
+
+  public static void error(String format) {
+    log(Level.ERROR, format, 0, 0.0, 0.0, 0.0);
+  }
+
+  public static void error(String format, double a) {
+    log(Level.ERROR, format, 1, a, 0.0, 0.0);
+  }
+
+  /**
+   * Queues a preformatted report, like a startup timing table, at INFO level.
+   * It isn't rate limited, so reports made back to back at startup all get
+   * through. Not for use from the loop.
+   *
+   * @param text Report text, written as is
+   * @return Whether the report was queued
+   */
+  public static boolean report(String text) {
+    return enqueue(System.nanoTime(), Level.INFO, text, 0, 0.0, 0.0, 0.0);
+  }
+
+  /**
+   * Queues a message without blocking or allocating.
+   *
+   * @param level    Message level
+   * @param format   Constant {@link String#format(String, Object...)} pattern
+   * @param argCount Number of arguments used by the pattern [0, 3]
+   * @param a        First argument
+   * @param b        Second argument
+   * @param c        Third argument
+   * @return Whether the message was queued
+   */
+  public static boolean log(Level level, String format, int argCount, double a, double b, double c) {
+    long now = System.nanoTime();
+    int levelIndex = level.ordinal();
+    long minInterval = s_minIntervalNanos[levelIndex];
+    if (minInterval > 0) {
+      long last = s_lastAcceptedNanos.get(levelIndex);
+      if (now - last < minInterval || !s_lastAcceptedNanos.compareAndSet(levelIndex, last, now)) {
+        s_rateLimited.incrementAndGet();
+        return false;
+      }
+    }
+    return enqueue(now, level, format, argCount, a, b, c);
+  }
+
+  private static boolean enqueue(long now, Level level, String format, int argCount, double a, double b, double c) {
+    long claim;
+    int index;
+    while (true) {
+      claim = s_tail.get();
+      index = (int) (claim & MASK);
+      long difference = s_sequences.get(index) - claim;
+      if (difference == 0) {
+        if (s_tail.compareAndSet(claim, claim + 1)) {
+          break;
+        }
+      } else if (difference < 0) {
+        // Consumer hasn't freed this slot yet, the buffer is full
+        s_dropped.incrementAndGet();
+        return false;
+      }
+    }
+
+    s_timestamps[index] = now;
+    s_levels[index] = level;
+    s_formats[index] = format;
+    s_argCounts[index] = Math.min(Math.max(argCount, 0), MAX_ARGS);
+    s_args[index * MAX_ARGS] = a;
+    s_args[index * MAX_ARGS + 1] = b;
+    s_args[index * MAX_ARGS + 2] = c;
+    s_sequences.lazySet(index, claim + 1);
+    return true;
+  }
+
+  /**
+   * @return Number of messages dropped because the buffer was full
+   */
+  public static long getDroppedCount() {
+    return s_dropped.get();
+  }
+
+  /**
+   * @return Number of messages rejected by the per-level rate limits
+   */
+  public static long getRateLimitedCount() {
+    return s_rateLimited.get();
+  }
+
+  /**
+   * @return Number of messages written to the console
+   */
+  public static long getWrittenCount() {
+    return s_written.get();
+  }
+
+  private static void drainLoop() {
+    StringBuilder builder = new StringBuilder(256);
+    long lastDropReport = System.nanoTime();
+    long reportedDropped = 0;
+
+    while (true) {
+      int index = (int) (s_head & MASK);
+      if (s_sequences.get(index) != s_head + 1) {
+        long now = System.nanoTime();
+        long dropped = s_dropped.get();
+        if (dropped != reportedDropped && now - lastDropReport > DROP_REPORT_INTERVAL_NANOS) {
+          System.out.println("[WARN] diagnostics dropped " + (dropped - reportedDropped) + " messages");
+          reportedDropped = dropped;
+          lastDropReport = now;
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+        continue;
+      }
+
+      int argCount = s_argCounts[index];
+      Object[] formatArgs = s_formatArgs[argCount];
+      for (int i = 0; i < argCount; i++) {
+        formatArgs[i] = s_args[index * MAX_ARGS + i];
+      }
+      builder.setLength(0);
+      builder.append('[').append(s_levels[index]).append("] ")
+          .append(String.format("%.3f", s_timestamps[index] / 1e9)).append(' ');
+      try {
+        builder.append(argCount == 0 ? s_formats[index] : String.format(s_formats[index], formatArgs));
+      } catch (RuntimeException e) {
+        builder.append(s_formats[index]).append(" (bad format: ").append(e.getMessage()).append(')');
+      }
+
+      // Release the slot before doing console I/O
+      s_sequences.lazySet(index, s_head + CAPACITY);
+      s_head++;
+
+      System.out.println(builder);
+      s_written.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,243 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Low overhead loop timing profiler.
+ * <p>
+ * Subsystems time their own periodic with {@link #start()} and
+ * {@link #stop(int, long)}. Command lifecycle callbacks are timed through
+ * {@link CommandScheduler} hooks: since the hooks fire after each callback,
+ * a command's time is measured from the previous command callback or
+ * subsystem periodic, registered with {@link #registerPeriodic(String)}, in
+ * the same scheduler run. Components timed inside a command, like the
+ * drivetrain's setpoint generator, are registered with
+ * {@link #register(String)} and don't move that starting point, so they're
+ * counted in both. Subsystem periodics that aren't timed are charged to the
+ * first command callback after them. Callbacks outside a scheduler run, like commands scheduled
+ * from autonomousInit, have no previous event to measure from and aren't
+ * recorded. Timings go into preallocated log-linear histograms and
+ * p50/p99/max per component are published through
+ * {@link Logger#recordOutput(String, double)} once per publish window.
+ * Recording does not allocate, so it can be left on in matches.
+ */
+public final class LoopProfiler {
+  private static final int MAX_COMPONENTS = 64;
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = 64 * SUB_BUCKETS;
+  private static final int PUBLISH_PERIOD_CYCLES = 50;
+
+  private static final String[] s_p50Keys = new String[MAX_COMPONENTS];
+  private static final String[] s_p99Keys = new String[MAX_COMPONENTS];
+  private static final String[] s_maxKeys = new String[MAX_COMPONENTS];
+  private static final long[][] s_histograms = new long[MAX_COMPONENTS][BUCKETS];
+  private static final long[] s_counts = new long[MAX_COMPONENTS];
+  private static final long[] s_maxNanos = new long[MAX_COMPONENTS];
+  // Whether a component is a subsystem periodic, which ends where the next command's time starts
+  private static final boolean[] s_periodic = new boolean[MAX_COMPONENTS];
+  private static final Map<String, Integer> s_ids = new HashMap<>();
+  // Command name to component id, one map per lifecycle phase
+  private static final String[] s_phaseSuffixes = { "/Initialize", "/Execute", "/End" };
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static final Map<String, Integer>[] s_commandIds = new Map[] {
+      new HashMap<>(), new HashMap<>(), new HashMap<>()
+  };
+  private static int s_componentCount = 0;
+
+  private static final int s_otherId = register("Other");
+  private static final int s_schedulerId = register("CommandScheduler");
+
+  private static long s_lastEventNanos = 0;
+  private static long s_cycleStartNanos = 0;
+  // Whether between beginCycle() and endCycle(), command hooks are only timed inside
+  private static boolean s_inCycle = false;
+  private static int s_cycles = 0;
+  private static boolean s_enabled = true;
+
+  private LoopProfiler() {
+  }
+
+  /**
+   * Registers a subsystem periodic to profile, the time from when it stops to
+   * the next command callback is charged to that command. Call at
+   * construction, not from the loop.
+   *
+   * @param name Name used in the log keys
+   * @return Id to pass to {@link #stop(int, long)}
+   */
+  public static int registerPeriodic(String name) {
+    int id = register(name);
+    if (id != s_otherId) {
+      s_periodic[id] = true;
+    }
+    return id;
+  }
+
+  /**
+   * Registers a component to profile, registering the same name twice returns
+   * the same id. Call at construction, not from the loop.
+   *
+   * @param name Name used in the log keys
+   * @return Id to pass to {@link #stop(int, long)}
+   */
+  public static int register(String name) {
+    Integer existing = s_ids.get(name);
+    if (existing != null) {
+      return existing;
+    }
+    if (s_componentCount >= MAX_COMPONENTS) {
+      return s_otherId;
+    }
+
+    int id = s_componentCount++;
+    s_p50Keys[id] = "Profiler/" + name + "/P50Micros";
+    s_p99Keys[id] = "Profiler/" + name + "/P99Micros";
+    s_maxKeys[id] = "Profiler/" + name + "/MaxMicros";
+    s_ids.put(name, id);
+    return id;
+  }
+
+  /** Times command lifecycle callbacks through the scheduler hooks. */
+  public static void installCommandHooks() {
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    scheduler.onCommandInitialize(command -> recordCommand(command, 0));
+    scheduler.onCommandExecute(command -> recordCommand(command, 1));
+    scheduler.onCommandFinish(command -> recordCommand(command, 2));
+    scheduler.onCommandInterrupt(command -> recordCommand(command, 2));
+  }
+
+  /**
+   * Enables or disables recording.
+   *
+   * @param enabled Whether to record timings
+   */
+  public static void setEnabled(boolean enabled) {
+    s_enabled = enabled;
+  }
+
+  /** Marks the start of a scheduler run, call right before {@link CommandScheduler#run()}. */
+  public static void beginCycle() {
+    s_cycleStartNanos = System.nanoTime();
+    s_lastEventNanos = s_cycleStartNanos;
+    s_inCycle = true;
+  }
+
+  /** Marks the end of a scheduler run and publishes the statistics when the window is full. */
+  public static void endCycle() {
+    s_inCycle = false;
+    record(s_schedulerId, System.nanoTime() - s_cycleStartNanos);
+
+    if (++s_cycles >= PUBLISH_PERIOD_CYCLES) {
+      s_cycles = 0;
+      publish();
+    }
+  }
+
+  /**
+   * @return Start time to pass to {@link #stop(int, long)}
+   */
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the time since start for a component.
+   *
+   * @param id         Component id from {@link #register(String)} or
+   *                   {@link #registerPeriodic(String)}
+   * @param startNanos Value returned by {@link #start()}
+   */
+  public static void stop(int id, long startNanos) {
+    long now = System.nanoTime();
+    record(id, now - startNanos);
+    if (s_periodic[id]) {
+      s_lastEventNanos = now;
+    }
+  }
+
+  private static void recordCommand(Command command, int phase) {
+    long now = System.nanoTime();
+    if (!s_enabled || !s_inCycle) {
+      return;
+    }
+    // Only allocates the first time a command name is seen
+    String name = command.getName();
+    Integer id = s_commandIds[phase].get(name);
+    if (id == null) {
+      id = register(name + s_phaseSuffixes[phase]);
+      s_commandIds[phase].put(name, id);
+    }
+    record(id, now - s_lastEventNanos);
+    s_lastEventNanos = now;
+  }
+
+  private static void record(int id, long nanos) {
+    if (!s_enabled || nanos < 0) {
+      return;
+    }
+    s_histograms[id][bucket(nanos)]++;
+    s_counts[id]++;
+    if (nanos > s_maxNanos[id]) {
+      s_maxNanos[id] = nanos;
+    }
+  }
+
+  private static void publish() {
+    for (int id = 0; id < s_componentCount; id++) {
+      if (s_counts[id] == 0) {
+        continue;
+      }
+      Logger.getInstance().recordOutput(s_p50Keys[id], percentileNanos(id, 0.50) / 1e3);
+      Logger.getInstance().recordOutput(s_p99Keys[id], percentileNanos(id, 0.99) / 1e3);
+      Logger.getInstance().recordOutput(s_maxKeys[id], s_maxNanos[id] / 1e3);
+
+      Arrays.fill(s_histograms[id], 0);
+      s_counts[id] = 0;
+      s_maxNanos[id] = 0;
+    }
+  }
+
+  private static long percentileNanos(int id, double percentile) {
+    long target = (long) Math.ceil(s_counts[id] * percentile);
+    long seen = 0;
+    long[] histogram = s_histograms[id];
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += histogram[i];
+      if (seen >= target) {
+        return Math.min(bucketUpperBound(i), s_maxNanos[id]);
+      }
+    }
+    return s_maxNanos[id];
+  }
+
+  // Log-linear buckets, each power of two is split into SUB_BUCKETS linear buckets
+  private static int bucket(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) nanos;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+    int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return Math.min((magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+  }
+
+  private static long bucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int subBucket = bucket % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << (magnitude - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import frc.robot.utils.Alert.AlertType;
+
+/**
+ * Runs slow hardware initialization concurrently on a bounded pool.
+ * <p>
+ * Each factory is submitted with a fallback. {@link #join()} waits for all of
+ * them, up to one deadline shared by all of them, and returns the results in
+ * submit order. A factory that throws or misses the deadline is reported to
+ * the driver station, with the exception's stack trace if it threw, raised as an {@link Alert} that stays on the dashboard
+ * and replaced by its fallback, so one bad device doesn't stop the robot from
+ * starting. Callers check {@link #getFailures()} to decide what still works.
+ * <p>
+ * A factory that misses the deadline is cancelled, but that's best effort:
+ * vendor configuration calls block in native code and don't respond to
+ * interrupts, so it may keep running on its daemon pool thread.
+ *
+ * @param <T> Type of object being initialized
+ */
+public class ParallelInit<T> {
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private final ExecutorService m_executor;
+  private final List<String> m_names = new ArrayList<>();
+  private final List<Future<T>> m_futures = new ArrayList<>();
+  private final List<Supplier<? extends T>> m_fallbacks = new ArrayList<>();
+  private final List<long[]> m_durations = new ArrayList<>();
+  private final List<String> m_failures = new ArrayList<>();
+
+  /**
+   * Create a parallel initializer
+   *
+   * @param name    Name used for the threads and the timing report
+   * @param threads Maximum number of factories run at once
+   */
+  public ParallelInit(String name, int threads) {
+    m_executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts initializing an object
+   *
+   * @param name     Name used in failure and timing reports
+   * @param factory  Creates the object, runs on a pool thread
+   * @param fallback Creates a replacement if the factory fails
+   */
+  public void submit(String name, Supplier<? extends T> factory, Supplier<? extends T> fallback) {
+    long[] duration = new long[1];
+    m_names.add(name);
+    m_fallbacks.add(fallback);
+    m_durations.add(duration);
+    m_futures.add(m_executor.submit(() -> {
+      long start = System.nanoTime();
+      try {
+        return factory.get();
+      } finally {
+        duration[0] = System.nanoTime() - start;
+      }
+    }));
+  }
+
+  /**
+   * Waits for every submitted factory, all within one shared timeout, and
+   * shuts the pool down
+   *
+   * @return The objects in submit order, with fallbacks in place of failures
+   */
+  public List<T> join() {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    List<T> results = new ArrayList<>(m_futures.size());
+    StringBuilder report = new StringBuilder("Parallel init\n");
+    for (int i = 0; i < m_futures.size(); i++) {
+      String name = m_names.get(i);
+      T result;
+      try {
+        result = m_futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        report.append(String.format("  %-16s %7.1f ms%n", name, m_durations.get(i)[0] / 1e6));
+      } catch (ExecutionException e) {
+        result = fail(i, "Failed to initialize " + name + ": " + e.getCause(), e.getCause().getStackTrace());
+        report.append(String.format("  %-16s failed%n", name));
+      } catch (TimeoutException e) {
+        m_futures.get(i).cancel(true);
+        result = fail(i, "Timed out initializing " + name, null);
+        report.append(String.format("  %-16s timed out%n", name));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        result = fail(i, "Interrupted initializing " + name, null);
+        report.append(String.format("  %-16s interrupted%n", name));
+      }
+      results.add(result);
+    }
+    m_executor.shutdown();
+    Diagnostics.report(report.toString().stripTrailing());
+    return results;
+  }
+
+  /**
+   * @return Names of the factories that failed, valid after {@link #join()}
+   */
+  public List<String> getFailures() {
+    return Collections.unmodifiableList(m_failures);
+  }
+
+  private T fail(int index, String message, StackTraceElement[] stackTrace) {
+    m_failures.add(m_names.get(index));
+    new Alert(message, AlertType.ERROR).set(true, stackTrace);
+    return m_fallbacks.get(index).get();
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+/**
+ * Estimates pitch and pitch rate from high rate gyro samples.
+ * <p>
+ * The pitch rate is the raw gyro rate through a single pole low pass filter.
+ * The pitch is a complementary filter: the raw rate is integrated for fast
+ * response and slowly pulled toward the fused pitch, which lags but doesn't
+ * drift. Both filters use the actual time between samples, so the same
+ * estimator works on odometry thread samples and on once per loop samples. Not
+ * thread safe, use from the main robot thread only.
+ */
+public class PitchEstimator {
+  private final double m_rateTimeConstant;
+  private final double m_pitchTimeConstant;
+
+  private double m_pitchDegrees = 0.0;
+  private double m_pitchRateDegreesPerSec = 0.0;
+  private double m_lastTimestamp = Double.NaN;
+
+  /**
+   * Create a pitch estimator
+   *
+   * @param rateTimeConstantSeconds  Time constant of the pitch rate low pass filter
+   * @param pitchTimeConstantSeconds How long the integrated rate is trusted over the fused pitch
+   */
+  public PitchEstimator(double rateTimeConstantSeconds, double pitchTimeConstantSeconds) {
+    m_rateTimeConstant = rateTimeConstantSeconds;
+    m_pitchTimeConstant = pitchTimeConstantSeconds;
+  }
+
+  /**
+   * Adds a gyro sample, samples must be added in increasing time order
+   *
+   * @param timestampSeconds          Sample time
+   * @param pitchDegrees              Fused pitch from the gyro
+   * @param rawPitchRateDegreesPerSec Raw gyro rate about the pitch axis
+   */
+  public void update(double timestampSeconds, double pitchDegrees, double rawPitchRateDegreesPerSec) {
+    double dt = timestampSeconds - m_lastTimestamp;
+    m_lastTimestamp = timestampSeconds;
+    // First sample, or a gap long enough that the integrated rate is stale
+    if (!(dt > 0.0 && dt < 0.1)) {
+      m_pitchDegrees = pitchDegrees;
+      m_pitchRateDegreesPerSec = rawPitchRateDegreesPerSec;
+      return;
+    }
+
+    m_pitchRateDegreesPerSec += dt / (m_rateTimeConstant + dt)
+        * (rawPitchRateDegreesPerSec - m_pitchRateDegreesPerSec);
+
+    double predicted = m_pitchDegrees + rawPitchRateDegreesPerSec * dt;
+    m_pitchDegrees = predicted + dt / (m_pitchTimeConstant + dt) * (pitchDegrees - predicted);
+  }
+
+  /**
+   * @return Estimated pitch in degrees
+   */
+  public double getPitchDegrees() {
+    return m_pitchDegrees;
+  }
+
+  /**
+   * @return Filtered pitch rate in degrees per second
+   */
+  public double getPitchRateDegreesPerSec() {
+    return m_pitchRateDegreesPerSec;
+  }
+}
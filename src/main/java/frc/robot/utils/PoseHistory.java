@@ -0,0 +1,197 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Fixed capacity history of timestamped robot poses.
+ * <p>
+ * Poses are stored as primitives in a ring buffer so adding one never
+ * allocates. Lookups binary search the timestamps and interpolate between the
+ * two closest samples. Samples must be added in increasing time order. Not
+ * thread safe, use from the main robot thread only.
+ */
+public class PoseHistory {
+  private final int m_capacity;
+  private final double[] m_timestamps;
+  private final double[] m_x;
+  private final double[] m_y;
+  private final double[] m_theta;
+
+  // Index of the oldest sample and number of samples stored
+  private int m_start = 0;
+  private int m_size = 0;
+
+  /**
+   * Create a pose history
+   *
+   * @param capacity Maximum number of samples kept, oldest are overwritten first
+   */
+  public PoseHistory(int capacity) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Pose history needs room for at least two samples");
+    }
+    m_capacity = capacity;
+    m_timestamps = new double[capacity];
+    m_x = new double[capacity];
+    m_y = new double[capacity];
+    m_theta = new double[capacity];
+  }
+
+  /**
+   * Create a pose history sized for a given length of time
+   *
+   * @param historySeconds Length of history to keep
+   * @param sampleRateHz   Rate samples are added at
+   * @return A pose history with enough capacity for the requested time
+   */
+  public static PoseHistory forDuration(double historySeconds, double sampleRateHz) {
+    return new PoseHistory(Math.max((int) Math.ceil(historySeconds * sampleRateHz), 2));
+  }
+
+  /**
+   * Adds a sample without allocating. Samples older than the newest one are
+   * ignored.
+   *
+   * @param timestampSeconds Time of the sample
+   * @param xMeters          Field x position
+   * @param yMeters          Field y position
+   * @param thetaRadians     Robot heading
+   */
+  public void add(double timestampSeconds, double xMeters, double yMeters, double thetaRadians) {
+    if (m_size > 0 && timestampSeconds <= m_timestamps[physicalIndex(m_size - 1)]) {
+      return;
+    }
+
+    int index;
+    if (m_size < m_capacity) {
+      index = physicalIndex(m_size);
+      m_size++;
+    } else {
+      index = m_start;
+      m_start = (m_start + 1) % m_capacity;
+    }
+
+    m_timestamps[index] = timestampSeconds;
+    m_x[index] = xMeters;
+    m_y[index] = yMeters;
+    m_theta[index] = thetaRadians;
+  }
+
+  /**
+   * Adds a sample.
+   *
+   * @param timestampSeconds Time of the sample
+   * @param pose             Pose at that time
+   */
+  public void add(double timestampSeconds, Pose2d pose) {
+    add(timestampSeconds, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+  }
+
+  /** Removes every sample, for example after odometry is reset. */
+  public void clear() {
+    m_start = 0;
+    m_size = 0;
+  }
+
+  /**
+   * @return Number of samples stored
+   */
+  public int size() {
+    return m_size;
+  }
+
+  /**
+   * @return Maximum number of samples kept
+   */
+  public int getCapacity() {
+    return m_capacity;
+  }
+
+  /**
+   * @return Timestamp of the oldest sample, or NaN if empty
+   */
+  public double getOldestTimestamp() {
+    return m_size == 0 ? Double.NaN : m_timestamps[m_start];
+  }
+
+  /**
+   * @return Timestamp of the newest sample, or NaN if empty
+   */
+  public double getNewestTimestamp() {
+    return m_size == 0 ? Double.NaN : m_timestamps[physicalIndex(m_size - 1)];
+  }
+
+  /**
+   * Finds the interpolated pose at a time without allocating. Times outside
+   * the history are clamped to the oldest or newest sample.
+   *
+   * @param timestampSeconds Time to look up
+   * @param result           Array of at least three to receive x, y and theta
+   * @return Whether there was any history to look up
+   */
+  public boolean sample(double timestampSeconds, double[] result) {
+    if (m_size == 0) {
+      return false;
+    }
+
+    // Find the first sample at or after the requested time
+    int low = 0;
+    int high = m_size - 1;
+    if (timestampSeconds <= m_timestamps[physicalIndex(low)]) {
+      copySample(physicalIndex(low), result);
+      return true;
+    }
+    if (timestampSeconds >= m_timestamps[physicalIndex(high)]) {
+      copySample(physicalIndex(high), result);
+      return true;
+    }
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (m_timestamps[physicalIndex(mid)] < timestampSeconds) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    int after = physicalIndex(low);
+    int before = physicalIndex(low - 1);
+    double t = (timestampSeconds - m_timestamps[before]) / (m_timestamps[after] - m_timestamps[before]);
+    result[0] = MathUtil.interpolate(m_x[before], m_x[after], t);
+    result[1] = MathUtil.interpolate(m_y[before], m_y[after], t);
+    result[2] = MathUtil.angleModulus(m_theta[before] + MathUtil.angleModulus(m_theta[after] - m_theta[before]) * t);
+    return true;
+  }
+
+  /**
+   * Finds the interpolated pose at a time.
+   *
+   * @param timestampSeconds Time to look up
+   * @return Pose at that time, or empty if there is no history
+   */
+  public Optional<Pose2d> sample(double timestampSeconds) {
+    double[] result = new double[3];
+    if (!sample(timestampSeconds, result)) {
+      return Optional.empty();
+    }
+    return Optional.of(new Pose2d(result[0], result[1], new Rotation2d(result[2])));
+  }
+
+  private int physicalIndex(int logicalIndex) {
+    return (m_start + logicalIndex) % m_capacity;
+  }
+
+  private void copySample(int index, double[] result) {
+    result[0] = m_x[index];
+    result[1] = m_y[index];
+    result[2] = m_theta[index];
+  }
+}
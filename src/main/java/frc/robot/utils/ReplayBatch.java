@@ -0,0 +1,121 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.littletonrobotics.junction.LogFileUtil;
+
+import frc.robot.Constants;
+
+/**
+ * Replays a directory of logs headless, one forked robot JVM per log.
+ * <p>
+ * Each log is replayed with {@link Constants#REPLAY_LOG_ENV} set, so the robot
+ * skips the prompt and exits when the log ends. The replay writes its outputs
+ * next to the log with a "_sim" suffix and its console output with a
+ * "_replay.txt" suffix. Once every log is done the changed output fields of
+ * each one are printed and saved to replay-summary.txt in the directory.
+ * <p>
+ * Run with ./gradlew replayLogs -PlogDir=path/to/logs [-PreplayJobs=n]
+ */
+public final class ReplayBatch {
+  private static final String SIM_SUFFIX = "_sim";
+  private static final String SUMMARY_FILE = "replay-summary.txt";
+  private static final long TIMEOUT_MINUTES = 30;
+
+  private ReplayBatch() {
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.err.println("Usage: ReplayBatch <log directory> [jobs]");
+      System.exit(1);
+    }
+    File directory = new File(args[0]);
+    int jobs = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    File[] logs = directory.listFiles((dir, name) -> name.endsWith(".wpilog")
+        && !name.endsWith(SIM_SUFFIX + ".wpilog"));
+    if (logs == null || logs.length == 0) {
+      System.err.println("No logs found in " + directory.getAbsolutePath());
+      System.exit(1);
+    }
+    Arrays.sort(logs);
+
+    System.out.printf("Replaying %d logs with %d jobs%n", logs.length, jobs);
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(jobs, 1));
+    List<Future<String>> results = new ArrayList<>();
+    for (File log : logs) {
+      results.add(executor.submit(() -> replay(log)));
+    }
+
+    StringBuilder summary = new StringBuilder();
+    boolean failed = false;
+    for (int i = 0; i < logs.length; i++) {
+      String result;
+      try {
+        result = results.get(i).get();
+      } catch (ExecutionException e) {
+        result = String.format("%s: failed, %s%n", logs[i].getName(), e.getCause());
+        failed = true;
+      }
+      System.out.print(result);
+      summary.append(result);
+    }
+    executor.shutdown();
+    System.out.printf("Replayed %d logs in %.1f s%n", logs.length, (System.nanoTime() - start) / 1e9);
+
+    Files.writeString(new File(directory, SUMMARY_FILE).toPath(), summary);
+    System.exit(failed ? 1 : 0);
+  }
+
+  private static String replay(File log) throws IOException, InterruptedException {
+    String logPath = log.getAbsolutePath();
+    File output = new File(LogFileUtil.addPathSuffix(logPath, SIM_SUFFIX));
+    Files.deleteIfExists(output.toPath());
+
+    // Same JVM, classpath and natives as this one
+    ProcessBuilder builder = new ProcessBuilder(
+        new File(System.getProperty("java.home"), "bin/java").getPath(),
+        "-Djava.library.path=" + System.getProperty("java.library.path"),
+        "-cp", System.getProperty("java.class.path"),
+        "frc.robot.Main");
+    builder.environment().put(Constants.REPLAY_LOG_ENV, logPath);
+    builder.redirectErrorStream(true);
+    builder.redirectOutput(new File(logPath.substring(0, logPath.length() - ".wpilog".length()) + "_replay.txt"));
+
+    long start = System.nanoTime();
+    Process process = builder.start();
+    if (!process.waitFor(TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+      process.destroyForcibly();
+      throw new IOException("replay timed out");
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    if (!output.exists()) {
+      throw new IOException("replay exited with " + process.exitValue() + " without writing "
+          + output.getName());
+    }
+
+    ReplayDiff.Result diff = ReplayDiff.compare(output.getPath());
+    StringBuilder result = new StringBuilder(String.format("%s: %.1f s, %d of %d output fields changed%n",
+        log.getName(), seconds, diff.changed.size(), diff.fieldCount));
+    for (ReplayDiff.FieldDiff field : diff.changed) {
+      result.append("  ").append(field).append(System.lineSeparator());
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,166 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+
+/**
+ * Compares the outputs recorded on the robot with the outputs recomputed by
+ * log replay.
+ * <p>
+ * A replayed log holds both the original "RealOutputs" and the new
+ * "ReplayOutputs". AdvantageKit only writes a field when it changes, so each
+ * field is a list of timestamped values. The two lists are walked together and
+ * every timestamp where the current values differ is counted.
+ */
+public final class ReplayDiff {
+  private static final String REAL_PREFIX = "RealOutputs/";
+  private static final String REPLAY_PREFIX = "ReplayOutputs/";
+
+  /** Difference in one output field. */
+  public static class FieldDiff {
+    public final String field;
+    public final int mismatches;
+    public final double firstMismatchSeconds;
+    public final boolean missingReal;
+    public final boolean missingReplay;
+
+    private FieldDiff(String field, int mismatches, double firstMismatchSeconds, boolean missingReal,
+        boolean missingReplay) {
+      this.field = field;
+      this.mismatches = mismatches;
+      this.firstMismatchSeconds = firstMismatchSeconds;
+      this.missingReal = missingReal;
+      this.missingReplay = missingReplay;
+    }
+
+    @Override
+    public String toString() {
+      if (missingReal) {
+        return String.format("%s: only in replay", field);
+      }
+      if (missingReplay) {
+        return String.format("%s: only in real", field);
+      }
+      return String.format("%s: %d mismatches, first at %.3f s", field, mismatches, firstMismatchSeconds);
+    }
+  }
+
+  /** Result of comparing one log. */
+  public static class Result {
+    public final int fieldCount;
+    public final List<FieldDiff> changed;
+
+    private Result(int fieldCount, List<FieldDiff> changed) {
+      this.fieldCount = fieldCount;
+      this.changed = changed;
+    }
+  }
+
+  private static class Value {
+    final long timestamp;
+    final byte[] data;
+
+    Value(long timestamp, byte[] data) {
+      this.timestamp = timestamp;
+      this.data = data;
+    }
+  }
+
+  private ReplayDiff() {
+  }
+
+  /**
+   * Compares the real and replayed outputs in a replayed log
+   *
+   * @param replayedLog Path of the "_sim" log written by replay
+   * @return Every output field and the ones that changed, sorted by name
+   * @throws IOException If the log can't be read
+   */
+  public static Result compare(String replayedLog) throws IOException {
+    DataLogReader reader = new DataLogReader(replayedLog);
+    if (!reader.isValid()) {
+      throw new IOException("Not a WPILOG file: " + replayedLog);
+    }
+
+    Map<Integer, List<Value>> entries = new HashMap<>();
+    Map<String, List<Value>> real = new TreeMap<>();
+    Map<String, List<Value>> replay = new TreeMap<>();
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        DataLogRecord.StartRecordData start = record.getStartData();
+        String name = start.name.startsWith("/") ? start.name.substring(1) : start.name;
+        if (name.startsWith(REAL_PREFIX)) {
+          entries.put(start.entry, real.computeIfAbsent(name.substring(REAL_PREFIX.length()),
+              key -> new ArrayList<>()));
+        } else if (name.startsWith(REPLAY_PREFIX)) {
+          entries.put(start.entry, replay.computeIfAbsent(name.substring(REPLAY_PREFIX.length()),
+              key -> new ArrayList<>()));
+        }
+      } else if (!record.isControl()) {
+        List<Value> values = entries.get(record.getEntry());
+        if (values != null) {
+          values.add(new Value(record.getTimestamp(), record.getRaw()));
+        }
+      }
+    }
+
+    TreeSet<String> fields = new TreeSet<>(real.keySet());
+    fields.addAll(replay.keySet());
+    List<FieldDiff> changed = new ArrayList<>();
+    for (String field : fields) {
+      List<Value> realValues = real.get(field);
+      List<Value> replayValues = replay.get(field);
+      if (realValues == null || replayValues == null) {
+        changed.add(new FieldDiff(field, 0, Double.NaN, realValues == null, replayValues == null));
+        continue;
+      }
+      FieldDiff diff = compareField(field, realValues, replayValues);
+      if (diff != null) {
+        changed.add(diff);
+      }
+    }
+    return new Result(fields.size(), changed);
+  }
+
+  private static FieldDiff compareField(String field, List<Value> real, List<Value> replay) {
+    int realIndex = 0;
+    int replayIndex = 0;
+    byte[] realValue = null;
+    byte[] replayValue = null;
+    int mismatches = 0;
+    long firstMismatch = 0;
+
+    while (realIndex < real.size() || replayIndex < replay.size()) {
+      long realTime = realIndex < real.size() ? real.get(realIndex).timestamp : Long.MAX_VALUE;
+      long replayTime = replayIndex < replay.size() ? replay.get(replayIndex).timestamp : Long.MAX_VALUE;
+      long time = Math.min(realTime, replayTime);
+      while (realIndex < real.size() && real.get(realIndex).timestamp == time) {
+        realValue = real.get(realIndex++).data;
+      }
+      while (replayIndex < replay.size() && replay.get(replayIndex).timestamp == time) {
+        replayValue = replay.get(replayIndex++).data;
+      }
+
+      if (!Arrays.equals(realValue, replayValue)) {
+        if (mismatches == 0) {
+          firstMismatch = time;
+        }
+        mismatches++;
+      }
+    }
+    return mismatches == 0 ? null : new FieldDiff(field, mismatches, firstMismatch / 1e6, false, false);
+  }
+}
@@ -0,0 +1,201 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Turns desired chassis speeds into module setpoints the modules can follow.
+ * <p>
+ * Each loop the chassis speeds are first discretized, so translating while
+ * rotating over one loop period doesn't skew the path. The module velocity
+ * vectors are then moved from the previous setpoint towards the desired ones
+ * by the largest common fraction that keeps every module's acceleration and
+ * steering rate within limits. Because the fraction is shared, the modules
+ * stay coordinated and the chassis moves along the straight line between the
+ * two chassis speeds. A module that would still need to steer faster than
+ * allowed, for example when starting from rest in a new direction, has its
+ * angle rate limited and its speed scaled by the cosine of the remaining
+ * error so it doesn't push the wrong way.
+ * <p>
+ * Works on preallocated primitive arrays and never allocates. Not thread safe.
+ */
+public class SwerveSetpointGenerator {
+  private static final double SPEED_EPSILON = 1e-6;
+  private static final int BISECTION_ITERATIONS = 10;
+
+  private final int m_moduleCount;
+  private final double[] m_moduleX;
+  private final double[] m_moduleY;
+  private final double m_maxSpeed;
+  private final double m_maxSpeedStep;
+  private final double m_maxSteerStep;
+  private final double m_dtSeconds;
+
+  // Previous setpoint as module velocity vectors, and angles for when a module is stopped
+  private final double[] m_previousVx;
+  private final double[] m_previousVy;
+  private final double[] m_previousAngles;
+  // Desired module velocity vectors
+  private final double[] m_desiredVx;
+  private final double[] m_desiredVy;
+
+  /**
+   * Create a setpoint generator
+   *
+   * @param moduleTranslations                   Module locations relative to the robot center
+   * @param maxSpeedMetersPerSecond              Max module speed
+   * @param maxAccelerationMetersPerSecondSquared Max change of module velocity, the traction limit
+   * @param maxSteerVelocityRadiansPerSecond     Max module steering rate
+   * @param dtSeconds                            Loop period
+   */
+  public SwerveSetpointGenerator(Translation2d[] moduleTranslations, double maxSpeedMetersPerSecond,
+      double maxAccelerationMetersPerSecondSquared, double maxSteerVelocityRadiansPerSecond, double dtSeconds) {
+    m_moduleCount = moduleTranslations.length;
+    m_moduleX = new double[m_moduleCount];
+    m_moduleY = new double[m_moduleCount];
+    for (int i = 0; i < m_moduleCount; i++) {
+      m_moduleX[i] = moduleTranslations[i].getX();
+      m_moduleY[i] = moduleTranslations[i].getY();
+    }
+    m_maxSpeed = maxSpeedMetersPerSecond;
+    m_maxSpeedStep = maxAccelerationMetersPerSecondSquared * dtSeconds;
+    m_maxSteerStep = maxSteerVelocityRadiansPerSecond * dtSeconds;
+    m_dtSeconds = dtSeconds;
+
+    m_previousVx = new double[m_moduleCount];
+    m_previousVy = new double[m_moduleCount];
+    m_previousAngles = new double[m_moduleCount];
+    m_desiredVx = new double[m_moduleCount];
+    m_desiredVy = new double[m_moduleCount];
+  }
+
+  /**
+   * Sets the previous setpoint, for when the modules were commanded some
+   * other way.
+   *
+   * @param speeds Module speeds in meters per second
+   * @param angles Module angles in radians
+   */
+  public void reset(double[] speeds, double[] angles) {
+    for (int i = 0; i < m_moduleCount; i++) {
+      m_previousVx[i] = speeds[i] * Math.cos(angles[i]);
+      m_previousVy[i] = speeds[i] * Math.sin(angles[i]);
+      m_previousAngles[i] = angles[i];
+    }
+  }
+
+  /**
+   * Generates the next module setpoints.
+   *
+   * @param vxMetersPerSecond     Desired robot relative forward speed
+   * @param vyMetersPerSecond     Desired robot relative sideways speed
+   * @param omegaRadiansPerSecond Desired angular rate
+   * @param speeds                Array to receive module speeds, may be negative
+   * @param angles                Array to receive module angles in radians
+   */
+  public void generate(double vxMetersPerSecond, double vyMetersPerSecond, double omegaRadiansPerSecond,
+      double[] speeds, double[] angles) {
+    // Discretize, find the constant speeds whose arc ends at the pose the
+    // desired speeds would reach if translation and rotation were separate
+    double halfTheta = omegaRadiansPerSecond * m_dtSeconds / 2.0;
+    double cosMinusOne = Math.cos(2.0 * halfTheta) - 1.0;
+    double halfThetaByTanOfHalfTheta = Math.abs(cosMinusOne) < 1e-9
+        ? 1.0 - halfTheta * halfTheta / 3.0
+        : -(halfTheta * Math.sin(2.0 * halfTheta)) / cosMinusOne;
+    double vx = vxMetersPerSecond * halfThetaByTanOfHalfTheta + vyMetersPerSecond * halfTheta;
+    double vy = -vxMetersPerSecond * halfTheta + vyMetersPerSecond * halfThetaByTanOfHalfTheta;
+
+    // Inverse kinematics and desaturation
+    double maxSpeed = 0.0;
+    for (int i = 0; i < m_moduleCount; i++) {
+      m_desiredVx[i] = vx - omegaRadiansPerSecond * m_moduleY[i];
+      m_desiredVy[i] = vy + omegaRadiansPerSecond * m_moduleX[i];
+      maxSpeed = Math.max(maxSpeed, Math.hypot(m_desiredVx[i], m_desiredVy[i]));
+    }
+    if (maxSpeed > m_maxSpeed) {
+      double scale = m_maxSpeed / maxSpeed;
+      for (int i = 0; i < m_moduleCount; i++) {
+        m_desiredVx[i] *= scale;
+        m_desiredVy[i] *= scale;
+      }
+    }
+
+    // Largest fraction of the way to the desired setpoint every module can reach
+    double fraction = 1.0;
+    for (int i = 0; i < m_moduleCount; i++) {
+      double change = Math.hypot(m_desiredVx[i] - m_previousVx[i], m_desiredVy[i] - m_previousVy[i]);
+      if (change > m_maxSpeedStep) {
+        fraction = Math.min(fraction, m_maxSpeedStep / change);
+      }
+    }
+    for (int i = 0; i < m_moduleCount; i++) {
+      // Stopped modules can't be steered into the new direction by slowing down, they're rate limited below
+      if (Math.hypot(m_previousVx[i], m_previousVy[i]) > SPEED_EPSILON) {
+        fraction = Math.min(fraction, maxSteerFraction(i, fraction));
+      }
+    }
+
+    for (int i = 0; i < m_moduleCount; i++) {
+      double moduleVx = m_previousVx[i] + fraction * (m_desiredVx[i] - m_previousVx[i]);
+      double moduleVy = m_previousVy[i] + fraction * (m_desiredVy[i] - m_previousVy[i]);
+      double speed = Math.hypot(moduleVx, moduleVy);
+      double previousAngle = m_previousAngles[i];
+      if (speed <= SPEED_EPSILON) {
+        speeds[i] = 0.0;
+        angles[i] = previousAngle;
+        m_previousVx[i] = 0.0;
+        m_previousVy[i] = 0.0;
+        continue;
+      }
+
+      // Steer the short way, driving backwards if needed, at no more than the max rate
+      double steer = MathUtil.angleModulus(Math.atan2(moduleVy, moduleVx) - previousAngle);
+      if (Math.abs(steer) > Math.PI / 2.0) {
+        speed = -speed;
+        steer = MathUtil.angleModulus(steer + Math.PI);
+      }
+      double limitedSteer = MathUtil.clamp(steer, -m_maxSteerStep, m_maxSteerStep);
+      speed *= Math.cos(steer - limitedSteer);
+      double angle = MathUtil.angleModulus(previousAngle + limitedSteer);
+
+      speeds[i] = speed;
+      angles[i] = angle;
+      m_previousVx[i] = speed * Math.cos(angle);
+      m_previousVy[i] = speed * Math.sin(angle);
+      m_previousAngles[i] = angle;
+    }
+  }
+
+  /** Bisects for the largest fraction up to max where a module steers no faster than allowed. */
+  private double maxSteerFraction(int module, double max) {
+    if (steerChange(module, max) <= m_maxSteerStep) {
+      return max;
+    }
+    double low = 0.0;
+    double high = max;
+    for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+      double mid = (low + high) / 2.0;
+      if (steerChange(module, mid) <= m_maxSteerStep) {
+        low = mid;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Steering needed to reach a fraction of the way to the desired setpoint, allowing driving backwards. */
+  private double steerChange(int module, double fraction) {
+    double moduleVx = m_previousVx[module] + fraction * (m_desiredVx[module] - m_previousVx[module]);
+    double moduleVy = m_previousVy[module] + fraction * (m_desiredVy[module] - m_previousVy[module]);
+    if (Math.hypot(moduleVx, moduleVy) <= SPEED_EPSILON) {
+      return 0.0;
+    }
+    double steer = Math.abs(MathUtil.angleModulus(Math.atan2(moduleVy, moduleVx) - m_previousAngles[module]));
+    return Math.min(steer, Math.PI - steer);
+  }
+}
@@ -0,0 +1,195 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Dashboard publisher that only sends values worth sending.
+ * <p>
+ * Values go to the same SmartDashboard table as {@code SmartDashboard}, through
+ * publishers created the first time each key is used. A value is sent when it
+ * changes by more than its epsilon, no sooner than its priority's minimum
+ * period, and at least once per the priority's maximum period so a dashboard
+ * that connects late still gets it. Skipped sends NT4 would have sent, those
+ * with a value different from the last one sent, are counted with an estimate
+ * of their NT4 message size and reported as bytes per second saved. Skipped
+ * repeats of the same value aren't counted, NT4 already drops those.
+ */
+public final class Telemetry {
+  /** How often a key may and must be sent. */
+  public enum Priority {
+    /** Sent on every change, for values the drivers react to. */
+    HIGH(0.0, 1.0),
+    /** At most 10 times a second. */
+    NORMAL(0.1, 2.0),
+    /** At most twice a second, for tuning and debugging values. */
+    LOW(0.5, 5.0);
+
+    private final double m_minPeriodSeconds;
+    private final double m_maxPeriodSeconds;
+
+    Priority(double minPeriodSeconds, double maxPeriodSeconds) {
+      m_minPeriodSeconds = minPeriodSeconds;
+      m_maxPeriodSeconds = maxPeriodSeconds;
+    }
+  }
+
+  private static class Entry {
+    final Priority priority;
+    final double epsilon;
+    final int messageBytes;
+    DoublePublisher doublePublisher;
+    BooleanPublisher booleanPublisher;
+    double lastValue = Double.NaN;
+    double lastPublishSeconds = Double.NEGATIVE_INFINITY;
+
+    Entry(Priority priority, double epsilon, int messageBytes) {
+      this.priority = priority;
+      this.epsilon = epsilon;
+      this.messageBytes = messageBytes;
+    }
+  }
+
+  private static final double DEFAULT_EPSILON = 1e-3;
+  private static final double REPORT_PERIOD_SECONDS = 1.0;
+  // MessagePack encoded [topic id, timestamp, type, value] plus framing
+  private static final int DOUBLE_MESSAGE_BYTES = 24;
+  private static final int BOOLEAN_MESSAGE_BYTES = 16;
+
+  private static final NetworkTable s_table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+  private static final Map<String, Entry> s_entries = new HashMap<>();
+
+  private static long s_sentBytes = 0;
+  private static long s_savedBytes = 0;
+  private static double s_reportStartSeconds = Double.NaN;
+  private static double s_sentBytesPerSecond = 0.0;
+  private static double s_savedBytesPerSecond = 0.0;
+
+  private Telemetry() {
+  }
+
+  /**
+   * Publishes a number at normal priority.
+   *
+   * @param key   SmartDashboard key
+   * @param value Value to publish
+   */
+  public static void putNumber(String key, double value) {
+    putNumber(key, value, Priority.NORMAL, DEFAULT_EPSILON);
+  }
+
+  /**
+   * Publishes a number.
+   *
+   * @param key      SmartDashboard key
+   * @param value    Value to publish
+   * @param priority Priority of the key, fixed the first time it's used
+   * @param epsilon  Smallest change worth sending, fixed the first time it's used
+   */
+  public static void putNumber(String key, double value, Priority priority, double epsilon) {
+    Entry entry = s_entries.get(key);
+    if (entry == null) {
+      entry = new Entry(priority, epsilon, DOUBLE_MESSAGE_BYTES);
+      entry.doublePublisher = s_table.getDoubleTopic(key).publish();
+      s_entries.put(key, entry);
+    }
+    if (shouldPublish(entry, value)) {
+      entry.doublePublisher.set(value);
+    }
+  }
+
+  /**
+   * Publishes a boolean at normal priority.
+   *
+   * @param key   SmartDashboard key
+   * @param value Value to publish
+   */
+  public static void putBoolean(String key, boolean value) {
+    putBoolean(key, value, Priority.NORMAL);
+  }
+
+  /**
+   * Publishes a boolean.
+   *
+   * @param key      SmartDashboard key
+   * @param value    Value to publish
+   * @param priority Priority of the key, fixed the first time it's used
+   */
+  public static void putBoolean(String key, boolean value, Priority priority) {
+    Entry entry = s_entries.get(key);
+    if (entry == null) {
+      entry = new Entry(priority, 0.0, BOOLEAN_MESSAGE_BYTES);
+      entry.booleanPublisher = s_table.getBooleanTopic(key).publish();
+      s_entries.put(key, entry);
+    }
+    if (shouldPublish(entry, value ? 1.0 : 0.0)) {
+      entry.booleanPublisher.set(value);
+    }
+  }
+
+  /**
+   * @return Estimated bytes per second sent over the last report period
+   */
+  public static double getSentBytesPerSecond() {
+    return s_sentBytesPerSecond;
+  }
+
+  /**
+   * @return Estimated bytes per second of changed values not sent over the
+   *         last report period
+   */
+  public static double getSavedBytesPerSecond() {
+    return s_savedBytesPerSecond;
+  }
+
+  /** Updates and logs the bandwidth estimates, call once per loop. */
+  public static void periodic() {
+    double now = Timer.getFPGATimestamp();
+    if (Double.isNaN(s_reportStartSeconds)) {
+      s_reportStartSeconds = now;
+      return;
+    }
+    double elapsed = now - s_reportStartSeconds;
+    if (elapsed < REPORT_PERIOD_SECONDS) {
+      return;
+    }
+
+    s_sentBytesPerSecond = s_sentBytes / elapsed;
+    s_savedBytesPerSecond = s_savedBytes / elapsed;
+    s_sentBytes = 0;
+    s_savedBytes = 0;
+    s_reportStartSeconds = now;
+    Logger.getInstance().recordOutput("Telemetry/SentBytesPerSecond", s_sentBytesPerSecond);
+    Logger.getInstance().recordOutput("Telemetry/SavedBytesPerSecond", s_savedBytesPerSecond);
+  }
+
+  private static boolean shouldPublish(Entry entry, double value) {
+    double now = Timer.getFPGATimestamp();
+    double sinceLast = now - entry.lastPublishSeconds;
+    boolean changed = Double.isNaN(entry.lastValue) || Math.abs(value - entry.lastValue) > entry.epsilon;
+    if ((changed && sinceLast >= entry.priority.m_minPeriodSeconds)
+        || sinceLast >= entry.priority.m_maxPeriodSeconds) {
+      entry.lastValue = value;
+      entry.lastPublishSeconds = now;
+      s_sentBytes += entry.messageBytes;
+      return true;
+    }
+    // NT4 drops values equal to the last one sent, so skipping those saves nothing
+    if (value != entry.lastValue) {
+      s_savedBytes += entry.messageBytes;
+    }
+    return false;
+  }
+}
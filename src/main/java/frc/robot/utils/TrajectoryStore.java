@@ -0,0 +1,127 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.robot.Constants;
+
+/**
+ * Memoizes alliance transformed PathPlanner trajectories.
+ * <p>
+ * Trajectories are keyed by path name, constraints and alliance. The first
+ * request for a path and constraints loads it once and stores both alliance
+ * variants, so an alliance change before the match is always a hit. The store
+ * holds at most {@link Constants#TRAJECTORY_STORE_CAPACITY} trajectories and
+ * evicts the least recently used. Safe to use from any thread.
+ */
+public final class TrajectoryStore {
+  private static final Map<Key, PathPlannerTrajectory> s_trajectories = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, PathPlannerTrajectory> eldest) {
+      return size() > Constants.TRAJECTORY_STORE_CAPACITY;
+    }
+  };
+
+  private static long s_hits = 0;
+  private static long s_misses = 0;
+
+  private TrajectoryStore() {
+  }
+
+  /**
+   * Gets a path transformed for an alliance, loading it if it isn't stored
+   *
+   * @param pathName                           Name of the path
+   * @param maxSpeedMetersPerSec               Max velocity
+   * @param maxAccelerationMetersPerSecSquared Max acceleration
+   * @param alliance                           Alliance to transform for
+   * @return The transformed trajectory
+   */
+  public static synchronized PathPlannerTrajectory get(String pathName, double maxSpeedMetersPerSec,
+      double maxAccelerationMetersPerSecSquared, Alliance alliance) {
+    boolean red = alliance == Alliance.Red;
+    Key key = new Key(pathName, maxSpeedMetersPerSec, maxAccelerationMetersPerSecSquared, red);
+    PathPlannerTrajectory trajectory = s_trajectories.get(key);
+    if (trajectory != null) {
+      s_hits++;
+      return trajectory;
+    }
+    s_misses++;
+
+    PathPlannerTrajectory blue = CompiledTrajectory.loadOrGenerate(pathName, maxSpeedMetersPerSec,
+        maxAccelerationMetersPerSecSquared);
+    PathPlannerTrajectory mirrored = PathPlannerTrajectory.transformTrajectoryForAlliance(blue, Alliance.Red);
+    s_trajectories.put(new Key(pathName, maxSpeedMetersPerSec, maxAccelerationMetersPerSecSquared, !red),
+        red ? blue : mirrored);
+    s_trajectories.put(key, red ? mirrored : blue);
+    return red ? mirrored : blue;
+  }
+
+  /** Removes every stored trajectory. */
+  public static synchronized void clear() {
+    s_trajectories.clear();
+  }
+
+  /**
+   * @return Number of trajectories stored
+   */
+  public static synchronized int size() {
+    return s_trajectories.size();
+  }
+
+  /**
+   * @return Number of requests answered from the store
+   */
+  public static synchronized long getHitCount() {
+    return s_hits;
+  }
+
+  /**
+   * @return Number of requests that had to load the path
+   */
+  public static synchronized long getMissCount() {
+    return s_misses;
+  }
+
+  private static final class Key {
+    private final String m_pathName;
+    private final double m_maxSpeed;
+    private final double m_maxAcceleration;
+    private final boolean m_red;
+
+    Key(String pathName, double maxSpeed, double maxAcceleration, boolean red) {
+      m_pathName = pathName;
+      m_maxSpeed = maxSpeed;
+      m_maxAcceleration = maxAcceleration;
+      m_red = red;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return m_pathName.equals(key.m_pathName)
+          && Double.compare(m_maxSpeed, key.m_maxSpeed) == 0
+          && Double.compare(m_maxAcceleration, key.m_maxAcceleration) == 0
+          && m_red == key.m_red;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(m_pathName, m_maxSpeed, m_maxAcceleration, m_red);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import edu.wpi.first.hal.HAL;
+
+/**
+ * Checks that the steady state teleop loop, sampling sensors and driving, does
+ * not allocate once the JIT has warmed up. Odometry is excluded, the pose
+ * estimator allocates by design.
+ */
+class DriveSubsystemAllocationTest {
+  private static final int WARMUP_LOOPS = 20000;
+  private static final int MEASURED_LOOPS = 10000;
+
+  @BeforeAll
+  static void initializeHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  void teleopLoopDoesNotAllocate() {
+    DriveSubsystem drive = new DriveSubsystem(new GyroIO() {}, new SwerveModuleIO() {}, new SwerveModuleIO() {},
+        new SwerveModuleIO() {}, new SwerveModuleIO() {});
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    for (int i = 0; i < WARMUP_LOOPS; i++) {
+      loop(drive, i);
+    }
+
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < MEASURED_LOOPS; i++) {
+      loop(drive, i);
+    }
+    long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+    // Allow for the odd allocation from the measurement itself, not one per loop
+    assertTrue(allocated < MEASURED_LOOPS, "teleop loop allocated " + allocated + " bytes over "
+        + MEASURED_LOOPS + " loops");
+  }
+
+  private static void loop(DriveSubsystem drive, int i) {
+    // Sweep the joystick around so the setpoint generator and module optimization do real work
+    double t = i * 0.02;
+    drive.updateSensors();
+    drive.drive(2.0 * Math.sin(t), 2.0 * Math.cos(0.7 * t), Math.sin(0.3 * t), true);
+  }
+}
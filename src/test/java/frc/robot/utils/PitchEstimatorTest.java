@@ -0,0 +1,85 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PitchEstimatorTest {
+  private static final double RATE_TIME_CONSTANT = 0.02;
+  private static final double PITCH_TIME_CONSTANT = 0.5;
+  private static final double DT = 0.004;
+
+  @Test
+  void firstSampleInitializesEstimate() {
+    PitchEstimator estimator = new PitchEstimator(RATE_TIME_CONSTANT, PITCH_TIME_CONSTANT);
+
+    estimator.update(1.0, 12.0, -3.0);
+
+    assertEquals(12.0, estimator.getPitchDegrees(), 1e-9);
+    assertEquals(-3.0, estimator.getPitchRateDegreesPerSec(), 1e-9);
+  }
+
+  @Test
+  void tracksSteadyTiltWithoutLag() {
+    PitchEstimator estimator = new PitchEstimator(RATE_TIME_CONSTANT, PITCH_TIME_CONSTANT);
+    double rate = 15.0;
+
+    // The gyro's fused pitch and raw rate agree, the robot is tipping at a constant rate
+    for (int i = 0; i <= 250; i++) {
+      double t = i * DT;
+      estimator.update(t, rate * t, rate);
+    }
+
+    assertEquals(rate * 250 * DT, estimator.getPitchDegrees(), 1e-6);
+    assertEquals(rate, estimator.getPitchRateDegreesPerSec(), 1e-6);
+  }
+
+  @Test
+  void pullsTowardFusedPitchWhenRateDisagrees() {
+    PitchEstimator estimator = new PitchEstimator(RATE_TIME_CONSTANT, PITCH_TIME_CONSTANT);
+    estimator.update(0.0, 0.0, 0.0);
+
+    // A level gyro rate with a tilted fused pitch, the integrated rate can't drift away from it
+    double t = 0.0;
+    for (int i = 0; i < 1000; i++) {
+      t += DT;
+      estimator.update(t, 10.0, 0.0);
+    }
+
+    assertEquals(10.0, estimator.getPitchDegrees(), 0.01);
+    assertEquals(0.0, estimator.getPitchRateDegreesPerSec(), 1e-9);
+  }
+
+  @Test
+  void filtersRateNoise() {
+    PitchEstimator estimator = new PitchEstimator(RATE_TIME_CONSTANT, PITCH_TIME_CONSTANT);
+    estimator.update(0.0, 0.0, 0.0);
+
+    // Alternating noise around zero, much faster than the filter time constant
+    double maxRate = 0.0;
+    for (int i = 1; i <= 500; i++) {
+      estimator.update(i * DT, 0.0, i % 2 == 0 ? 20.0 : -20.0);
+      maxRate = Math.max(maxRate, Math.abs(estimator.getPitchRateDegreesPerSec()));
+    }
+
+    assertTrue(maxRate < 5.0, "filtered rate reached " + maxRate);
+  }
+
+  @Test
+  void resetsAfterSampleGap() {
+    PitchEstimator estimator = new PitchEstimator(RATE_TIME_CONSTANT, PITCH_TIME_CONSTANT);
+    estimator.update(0.0, 0.0, 0.0);
+    estimator.update(DT, 0.0, 0.0);
+
+    // Too long since the last sample to integrate the rate over, start again from the fused pitch
+    estimator.update(DT + 0.5, 8.0, 2.0);
+
+    assertEquals(8.0, estimator.getPitchDegrees(), 1e-9);
+    assertEquals(2.0, estimator.getPitchRateDegreesPerSec(), 1e-9);
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+
+class SwerveSetpointGeneratorTest {
+  private static final double DT = 0.02;
+  private static final double MAX_SPEED = 5.0;
+  private static final double MAX_ACCELERATION = 5.0;
+  private static final double MAX_STEER_VELOCITY = 10.0;
+  private static final double UNLIMITED = 1e9;
+  private static final double EPSILON = 1e-9;
+  private static final Translation2d[] MODULES = {
+      new Translation2d(0.3, 0.3),
+      new Translation2d(0.3, -0.3),
+      new Translation2d(-0.3, 0.3),
+      new Translation2d(-0.3, -0.3)
+  };
+
+  private final double[] m_speeds = new double[MODULES.length];
+  private final double[] m_angles = new double[MODULES.length];
+
+  @Test
+  void discretizationMatchesPoseLogOverOneLoop() {
+    SwerveSetpointGenerator generator = new SwerveSetpointGenerator(MODULES, MAX_SPEED, UNLIMITED, UNLIMITED, DT);
+    double vx = 2.0;
+    double vy = -1.0;
+    double omega = 3.0;
+
+    generator.generate(vx, vy, omega, m_speeds, m_angles);
+
+    // Translating and rotating separately over one loop ends here, the discretized speeds follow the arc to it
+    Twist2d twist = new Pose2d().log(new Pose2d(vx * DT, vy * DT, new Rotation2d(omega * DT)));
+    // The modules are symmetric about the center, so their mean velocity is the chassis translation
+    double meanVx = 0.0;
+    double meanVy = 0.0;
+    for (int i = 0; i < MODULES.length; i++) {
+      meanVx += m_speeds[i] * Math.cos(m_angles[i]) / MODULES.length;
+      meanVy += m_speeds[i] * Math.sin(m_angles[i]) / MODULES.length;
+    }
+    assertEquals(twist.dx / DT, meanVx, 1e-9);
+    assertEquals(twist.dy / DT, meanVy, 1e-9);
+  }
+
+  @Test
+  void moduleVelocityChangesStayWithinAccelerationLimit() {
+    SwerveSetpointGenerator generator = new SwerveSetpointGenerator(MODULES, MAX_SPEED, MAX_ACCELERATION,
+        MAX_STEER_VELOCITY, DT);
+    double[] previousVx = new double[MODULES.length];
+    double[] previousVy = new double[MODULES.length];
+    Random random = new Random(42);
+
+    for (int loop = 0; loop < 2000; loop++) {
+      generator.generate(randomCommand(random, MAX_SPEED), randomCommand(random, MAX_SPEED),
+          randomCommand(random, 2.0 * Math.PI), m_speeds, m_angles);
+      for (int i = 0; i < MODULES.length; i++) {
+        double vx = m_speeds[i] * Math.cos(m_angles[i]);
+        double vy = m_speeds[i] * Math.sin(m_angles[i]);
+        double change = Math.hypot(vx - previousVx[i], vy - previousVy[i]);
+        assertTrue(change <= MAX_ACCELERATION * DT + EPSILON,
+            "module " + i + " velocity changed by " + change + " in loop " + loop);
+        previousVx[i] = vx;
+        previousVy[i] = vy;
+      }
+    }
+  }
+
+  @Test
+  void steerChangesStayWithinSteerRateLimit() {
+    SwerveSetpointGenerator generator = new SwerveSetpointGenerator(MODULES, MAX_SPEED, MAX_ACCELERATION,
+        MAX_STEER_VELOCITY, DT);
+    double[] previousAngles = new double[MODULES.length];
+    Random random = new Random(7);
+
+    for (int loop = 0; loop < 2000; loop++) {
+      generator.generate(randomCommand(random, MAX_SPEED), randomCommand(random, MAX_SPEED),
+          randomCommand(random, 2.0 * Math.PI), m_speeds, m_angles);
+      for (int i = 0; i < MODULES.length; i++) {
+        double steer = Math.abs(MathUtil.angleModulus(m_angles[i] - previousAngles[i]));
+        assertTrue(steer <= MAX_STEER_VELOCITY * DT + EPSILON,
+            "module " + i + " steered " + steer + " rad in loop " + loop);
+        previousAngles[i] = m_angles[i];
+      }
+    }
+  }
+
+  @Test
+  void stoppedModuleStartingInNewDirectionIsRateLimitedAndCosineScaled() {
+    SwerveSetpointGenerator generator = new SwerveSetpointGenerator(MODULES, MAX_SPEED, UNLIMITED,
+        MAX_STEER_VELOCITY, DT);
+    generator.reset(new double[MODULES.length], new double[MODULES.length]);
+    double direction = Math.PI / 3.0;
+
+    generator.generate(Math.cos(direction), Math.sin(direction), 0.0, m_speeds, m_angles);
+
+    double maxSteer = MAX_STEER_VELOCITY * DT;
+    for (int i = 0; i < MODULES.length; i++) {
+      assertEquals(maxSteer, m_angles[i], EPSILON);
+      // Only the part of the desired velocity along where the module points
+      assertEquals(Math.cos(direction - maxSteer), m_speeds[i], EPSILON);
+    }
+  }
+
+  private static double randomCommand(Random random, double max) {
+    // Hold some commands at zero so modules stop and restart too
+    return random.nextInt(4) == 0 ? 0.0 : (2.0 * random.nextDouble() - 1.0) * max;
+  }
+}